@@ -0,0 +1,36 @@
+package gopass.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, so the allocation rate of each
+ * is reported next to its time
+ * 
+ * @author Jason Mey
+ * @version 1.0
+ */
+public final class BenchMain {
+
+	/**
+	 * The runner is static, so no BenchMain is ever made
+	 */
+	private BenchMain() {
+	}
+
+	/**
+	 * Runs the benchmarks
+	 * 
+	 * @param args a pattern for the benchmarks to run; all of them if none
+	 * @throws RunnerException if the benchmarks could not be run
+	 */
+	public static void main(String[] args) throws RunnerException {
+		String include = args.length > 0 ? args[0] : "gopass\\.bench\\..*";
+		Options options = new OptionsBuilder().include(include)
+				.addProfiler(GCProfiler.class).build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,106 @@
+package gopass.bench;
+
+import gopass.engine.DerivationOptions;
+import gopass.engine.Game;
+import gopass.engine.PasswordBuilder;
+import gopass.engine.PasswordDeriver;
+import gopass.engine.RecordBook;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks making a password, the work GoGUI.setPassword does, through
+ * PasswordDeriver so no GUI is needed
+ * 
+ * The full derivation starts from nothing each time. The incremental one
+ * asks a PasswordBuilder that has already seen the game without its last
+ * move, which is what pressing "Make Password" again after one more move
+ * costs.
+ * 
+ * @author Jason Mey
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeriveBench {
+
+	/** The number of rows and columns */
+	@Param({ "9", "19" })
+	public int boardSize;
+
+	/** The most moves in the game */
+	@Param({ "8", "50", "200" })
+	public int gameLength;
+
+	/** EncodeBoard.SCHEME_V1 or SCHEME_V2 */
+	@Param({ "1", "2" })
+	public int scheme;
+
+	/** The seed */
+	private char[] seed;
+
+	/** The settings to derive with */
+	private DerivationOptions options;
+
+	/** The moves of the game */
+	private RecordBook book;
+
+	/** The moves of the game without the last one */
+	private RecordBook shorter;
+
+	/** A builder that is given the shorter and full games in turn */
+	private PasswordBuilder builder;
+
+	/**
+	 * Plays the game
+	 */
+	@Setup
+	public void setUp() {
+		seed = "benchmark seed".toCharArray();
+		options = new DerivationOptions(scheme, 2, 0);
+		Game game = new Game(boardSize, boardSize);
+		Games.replay(game, Games.quietGame(boardSize, gameLength, 1));
+		book = game.getRecordBook();
+		shorter = book.copyMoves();
+		shorter.removeLastRecord();
+		builder = new PasswordBuilder();
+	}
+
+	/**
+	 * Makes the password from nothing
+	 * 
+	 * @return the password, so the work is not thrown away
+	 */
+	@Benchmark
+	public String full() {
+		return PasswordDeriver.derive(seed, book, options);
+	}
+
+	/**
+	 * Makes the password for the game with one more move than last time
+	 * 
+	 * @return the password, so the work is not thrown away
+	 */
+	@Benchmark
+	public String oneMoreMove() {
+		long value = PasswordDeriver.seedOf(seed);
+		builder.getPassword(value, options, shorter);
+		return builder.getPassword(value, options, book);
+	}
+}
@@ -0,0 +1,77 @@
+package gopass.bench;
+
+import gopass.engine.EncodeBoard;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks encoding a board for the original scheme, for each symbol
+ * setting and number of characters per move. A new seed is used each time
+ * so no work can be carried over.
+ * 
+ * @author Jason Mey
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncodeBoardBench {
+
+	/** EncodeBoard.USE_ALL_SYMBOLS, USE_SOME_SYMBOLS or USE_NO_SYMBOLS */
+	@Param({ "0", "1", "2" })
+	public int useSymbols;
+
+	/** The number of characters for each move */
+	@Param({ "1", "2", "4" })
+	public int charsPerMove;
+
+	/** The next seed to encode with */
+	private long seed;
+
+	/** A board to encode again in place */
+	private EncodeBoard board;
+
+	/**
+	 * Makes the board to reuse
+	 */
+	@Setup
+	public void setUp() {
+		board = new EncodeBoard(seed, charsPerMove, useSymbols);
+	}
+
+	/**
+	 * Makes a new board
+	 * 
+	 * @return the board, so the work is not thrown away
+	 */
+	@Benchmark
+	public EncodeBoard construct() {
+		return new EncodeBoard(seed++, charsPerMove, useSymbols);
+	}
+
+	/**
+	 * Encodes the same board again with a new seed, as PasswordBuilder does
+	 * 
+	 * @return the board, so the work is not thrown away
+	 */
+	@Benchmark
+	public EncodeBoard encodeInPlace() {
+		board.encode(seed++);
+		return board;
+	}
+}
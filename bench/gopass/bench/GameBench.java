@@ -0,0 +1,101 @@
+package gopass.bench;
+
+import gopass.engine.Game;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks Game.play
+ * 
+ * A game is replayed from the start into one reused Game, so each result is
+ * the time for the whole game; divide by the number of moves for the time
+ * per move. The suicide benchmark plays a move that takes half the board
+ * off and then takes it back, as the board can only be set up once.
+ * 
+ * @author Jason Mey
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameBench {
+
+	/** The number of rows and columns */
+	@Param({ "9", "13", "19" })
+	public int boardSize;
+
+	/** The most moves in each game */
+	@Param({ "50", "200" })
+	public int gameLength;
+
+	/** A game where no stone is ever taken off the board */
+	private int[] quiet;
+
+	/** A game that takes stones off the board whenever it can */
+	private int[] capturing;
+
+	/** The game the moves are replayed into */
+	private Game game;
+
+	/** A game set up for black to kill half the board */
+	private Game suicide;
+
+	/**
+	 * Makes the games
+	 */
+	@Setup
+	public void setUp() {
+		quiet = Games.quietGame(boardSize, gameLength, 1);
+		capturing = Games.capturingGame(boardSize, gameLength, 1);
+		game = new Game(boardSize, boardSize);
+		suicide = Games.suicideSetup(boardSize);
+	}
+
+	/**
+	 * Replays the game with no captures
+	 * 
+	 * @return the game, so the work is not thrown away
+	 */
+	@Benchmark
+	public Game quietMoves() {
+		return Games.replay(game, quiet);
+	}
+
+	/**
+	 * Replays the game with captures
+	 * 
+	 * @return the game, so the work is not thrown away
+	 */
+	@Benchmark
+	public Game captures() {
+		return Games.replay(game, capturing);
+	}
+
+	/**
+	 * Kills black's group of half the board, then takes the move back
+	 * 
+	 * @return the number of stones taken off, so the work is not thrown away
+	 */
+	@Benchmark
+	public int largeGroupSuicide() {
+		suicide.play(boardSize / 2 - 1, boardSize - 1);
+		int taken = suicide.getWhiteCap();
+		suicide.undo();
+		return taken;
+	}
+}
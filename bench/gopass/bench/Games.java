@@ -0,0 +1,168 @@
+package gopass.bench;
+
+import gopass.GoBoard;
+import gopass.engine.Game;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Makes the games the benchmarks replay. Every game is made from a fixed
+ * seed, so each run of a benchmark plays the same moves.
+ * 
+ * @author Jason Mey
+ * @version 1.0
+ */
+public final class Games {
+
+	/** How many random points to try before giving up on finding a move */
+	private static final int TRIES = 200;
+
+	/**
+	 * The games are static, so no Games is ever made
+	 */
+	private Games() {
+	}
+
+	/**
+	 * Makes a game in which no move takes a stone off the board, as x, y
+	 * pairs. A small board may run out of such moves before the game is as
+	 * long as asked.
+	 * 
+	 * @param size the number of rows and columns
+	 * @param length the most moves to make
+	 * @param seed the seed for choosing the moves
+	 * @return the moves
+	 */
+	public static int[] quietGame(int size, int length, long seed) {
+		Random rand = new Random(seed);
+		Game game = new Game(size, size);
+		int[] moves = new int[length * 2];
+		int num = 0;
+		while (num < length) {
+			boolean found = false;
+			for (int i = 0; i < TRIES && !found; i++) {
+				int x = rand.nextInt(size);
+				int y = rand.nextInt(size);
+				if (!game.isLegal(x, y)) {
+					continue;
+				}
+				// Take the move back if it captured or killed itself
+				int caps = game.getBlackCap() + game.getWhiteCap();
+				game.play(x, y);
+				if (game.getBlackCap() + game.getWhiteCap() != caps
+						|| game.getBoard().getStoneAt(x, y) == GoBoard.EMPTY) {
+					game.undo();
+					continue;
+				}
+				moves[num * 2] = x;
+				moves[num * 2 + 1] = y;
+				num++;
+				found = true;
+			}
+			if (!found) {
+				break;
+			}
+		}
+		return Arrays.copyOf(moves, num * 2);
+	}
+
+	/**
+	 * Makes a game that takes stones off the board whenever it can, as x, y
+	 * pairs. Each move is the first of a handful of random legal points that
+	 * captures, or the first of them if none does.
+	 * 
+	 * @param size the number of rows and columns
+	 * @param length the most moves to make
+	 * @param seed the seed for choosing the moves
+	 * @return the moves
+	 */
+	public static int[] capturingGame(int size, int length, long seed) {
+		Random rand = new Random(seed);
+		Game game = new Game(size, size);
+		int[] moves = new int[length * 2];
+		int num = 0;
+		while (num < length) {
+			int fallback = -1;
+			int chosen = -1;
+			for (int i = 0; i < TRIES && chosen < 0; i++) {
+				int x = rand.nextInt(size);
+				int y = rand.nextInt(size);
+				if (!game.isLegal(x, y)) {
+					continue;
+				}
+				if (fallback < 0) {
+					fallback = x * size + y;
+				}
+				int caps = game.getBlackCap() + game.getWhiteCap();
+				game.play(x, y);
+				if (game.getBlackCap() + game.getWhiteCap() != caps) {
+					chosen = x * size + y;
+				} else {
+					game.undo();
+				}
+				if (i >= 16 && fallback >= 0) {
+					break;
+				}
+			}
+			if (chosen < 0) {
+				if (fallback < 0) {
+					break;
+				}
+				chosen = fallback;
+				game.play(chosen / size, chosen % size);
+			}
+			moves[num * 2] = chosen / size;
+			moves[num * 2 + 1] = chosen % size;
+			num++;
+		}
+		return Arrays.copyOf(moves, num * 2);
+	}
+
+	/**
+	 * Sets up a game where black's next move at the last point of the top
+	 * half of the board kills its own group of half the board. White walls
+	 * the group in with a full row of its own, passing when it has nothing
+	 * left to play.
+	 * 
+	 * @param size the number of rows and columns, at least 3
+	 * @return the game, with black to play at (size / 2 - 1, size - 1)
+	 */
+	public static Game suicideSetup(int size) {
+		Game game = new Game(size, size);
+		int rows = size / 2;
+		int black = 0;
+		int white = 0;
+		int blackStones = rows * size - 1;
+		while (black < blackStones || white < size) {
+			if (black < blackStones) {
+				game.play(black / size, black % size);
+				black++;
+			} else {
+				game.pass();
+			}
+			if (white < size) {
+				game.play(rows, white);
+				white++;
+			} else {
+				game.pass();
+			}
+		}
+		return game;
+	}
+
+	/**
+	 * Replays moves into a game from the start
+	 * 
+	 * @param game the game, which is reset first
+	 * @param moves the moves, as x, y pairs
+	 * @return the game
+	 */
+	public static Game replay(Game game, int[] moves) {
+		game.reset();
+		for (int i = 0; i < moves.length; i += 2) {
+			game.play(moves[i], moves[i + 1]);
+		}
+		return game;
+	}
+}
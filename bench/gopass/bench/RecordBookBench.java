@@ -0,0 +1,73 @@
+package gopass.bench;
+
+import gopass.engine.Game;
+import gopass.engine.RecordBook;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks RecordBook.beenPlayed, asking about every intersection of the
+ * board once, as the board does when it draws the stones
+ * 
+ * @author Jason Mey
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecordBookBench {
+
+	/** The number of rows and columns */
+	@Param({ "9", "13", "19" })
+	public int boardSize;
+
+	/** The most moves in the game */
+	@Param({ "50", "200" })
+	public int gameLength;
+
+	/** The moves of the game */
+	private RecordBook book;
+
+	/**
+	 * Plays the game
+	 */
+	@Setup
+	public void setUp() {
+		Game game = new Game(boardSize, boardSize);
+		Games.replay(game, Games.capturingGame(boardSize, gameLength, 1));
+		book = game.getRecordBook();
+	}
+
+	/**
+	 * Asks about every intersection
+	 * 
+	 * @return the number played on, so the work is not thrown away
+	 */
+	@Benchmark
+	public int beenPlayed() {
+		int count = 0;
+		for (int x = 0; x < boardSize; x++) {
+			for (int y = 0; y < boardSize; y++) {
+				if (book.beenPlayed(x, y)) {
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+}
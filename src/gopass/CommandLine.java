@@ -0,0 +1,538 @@
+package gopass;
+
+import gopass.engine.Alphabet;
+import gopass.engine.DerivationOptions;
+import gopass.engine.EncodeBoard;
+import gopass.engine.Game;
+import gopass.engine.PasswordBuilder;
+import gopass.engine.PasswordDeriver;
+import gopass.engine.Record;
+import gopass.engine.RecordBook;
+import gopass.engine.SeedKdf;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Makes passwords from the command line, without the GUI
+ * 
+ * Nothing here (or in the engine classes it uses) loads AWT or Swing, so it
+ * starts quickly and runs on machines without a display. Moves are written
+ * the way Record.toString writes them ("c4", "PASS", or "27 5" on boards
+ * wider than 26), separated by spaces or commas.
+ * 
+ * @author Jason Mey
+ * @version 1.0
+ */
+public final class CommandLine {
+
+	/** How to use the command line */
+	private static final String USAGE =
+			"Usage: gopass --cli [options] [moves...]\n"
+			+ "\n"
+			+ "Makes a password from a seed and moves such as \"d4 q16 PASS\".\n"
+			+ "The seed is read from the first line of standard input unless\n"
+			+ "--seed is given, and the moves from the arguments, or from the\n"
+			+ "rest of standard input if there are none.\n"
+			+ "\n"
+			+ "Options:\n"
+			+ "  --seed=SEED       the seed (visible to other users; prefer stdin)\n"
+			+ "  --symbols=MODE    all, some or none (default all)\n"
+			+ "  --alphabet=CHARS  use exactly these characters\n"
+			+ "  --without=CHARS   leave these characters out\n"
+			+ "  --chars=N         characters per move (default 2)\n"
+			+ "  --v2              use the newer encoding scheme\n"
+			+ "  --size=N          board size (default 19; over 19 needs --v2)\n"
+			+ "  --kdf=FUNCTION    how the seed is stretched: legacy (default)\n"
+			+ "                    or pbkdf2:LANES:ITERATIONS\n"
+			+ "  --sites=A,B,...   make a password for each site, its seed being\n"
+			+ "                    the seed followed by the site's label, and\n"
+			+ "                    print LABEL<tab>PASSWORD lines\n"
+			+ "  --calibrate[=MS]  print the pbkdf2 function that takes about\n"
+			+ "                    MS milliseconds here (default 1000), and exit\n"
+			+ "  --stream          one request per line of standard input, as\n"
+			+ "                    SEED<tab>MOVES (or just MOVES with --seed),\n"
+			+ "                    one password per line of output; a request\n"
+			+ "                    that fails gives an empty line\n";
+
+	/** The exit status when everything worked */
+	private static final int OK = 0;
+
+	/** The exit status when a request had a bad move */
+	private static final int BAD_MOVE = 1;
+
+	/** The exit status when the options were wrong */
+	private static final int BAD_USAGE = 2;
+
+	/** The settings to make passwords with */
+	private DerivationOptions options;
+
+	/** The size of the board */
+	private int size;
+
+	/** Turns the characters of a seed into the seed */
+	private SeedKdf kdf;
+
+	/** The time to calibrate the seed function for, or 0 not to */
+	private long calibrate;
+
+	/** The seed given with --seed, or null to read it */
+	private char[] seed;
+
+	/** Whether to handle one request per line */
+	private boolean stream;
+
+	/** The moves given as arguments, or null to read them */
+	private String argMoves;
+
+	/** The labels of the sites to make passwords for, or null for one */
+	private List<String> sites;
+
+	/** The game the moves are played into, reused between requests */
+	private Game game;
+
+	/**
+	 * Builds the passwords, keeping the boards and password prefixes it has
+	 * made for the requests that follow, until the input runs out
+	 */
+	private PasswordBuilder builder;
+
+	/**
+	 * Creates a command line with the default settings
+	 */
+	private CommandLine() {
+		size = 19;
+		kdf = SeedKdf.LEGACY;
+		builder = new PasswordBuilder();
+	}
+
+	/**
+	 * Creates a command line with the same settings as another, but its own
+	 * game and password builder, so the two can run on different threads
+	 * 
+	 * @param settings the command line to copy the settings of
+	 */
+	CommandLine(CommandLine settings) {
+		options = settings.options;
+		size = settings.size;
+		kdf = settings.kdf;
+		seed = settings.seed;
+		stream = settings.stream;
+		argMoves = settings.argMoves;
+		sites = settings.sites;
+		builder = new PasswordBuilder();
+	}
+
+	/**
+	 * Makes a command line from its arguments
+	 * 
+	 * @param args the options and moves
+	 * @return the command line, or null if help was asked for
+	 * @throws IllegalArgumentException if an option is wrong
+	 */
+	static CommandLine parse(String[] args) {
+		CommandLine cli = new CommandLine();
+		return cli.parseArgs(args) ? cli : null;
+	}
+
+	/**
+	 * Whether moves were given as arguments
+	 * 
+	 * @return whether there were moves
+	 */
+	boolean hasMoves() {
+		return argMoves != null;
+	}
+
+	/**
+	 * Whether passwords for many sites were asked for
+	 * 
+	 * @return whether there were sites
+	 */
+	boolean hasSites() {
+		return sites != null;
+	}
+
+	/**
+	 * Sets how the characters of a seed are turned into the seed
+	 * 
+	 * @param kdf the seed function
+	 */
+	void setKdf(SeedKdf kdf) {
+		this.kdf = kdf;
+	}
+
+	/**
+	 * Gets the size of the board the moves are played on
+	 * 
+	 * @return the number of rows and of columns
+	 */
+	int getSize() {
+		return size;
+	}
+
+	/**
+	 * Runs the command line on the standard streams
+	 * 
+	 * @param args the arguments after --cli
+	 * @return the exit status
+	 */
+	public static int run(String[] args) {
+		BufferedReader in = new BufferedReader(new InputStreamReader(
+				System.in));
+		return run(args, in, System.out, System.err);
+	}
+
+	/**
+	 * Runs the command line
+	 * 
+	 * @param args the arguments after --cli
+	 * @param in where to read the seed and moves from
+	 * @param out where to write the passwords
+	 * @param err where to write errors
+	 * @return the exit status
+	 */
+	public static int run(String[] args, BufferedReader in, PrintStream out,
+			PrintStream err) {
+		CommandLine cli;
+		try {
+			cli = parse(args);
+			if (cli == null) {
+				out.print(USAGE);
+				return OK;
+			}
+			if (cli.calibrate > 0) {
+				out.println(SeedKdf.calibrate(cli.calibrate));
+				return OK;
+			}
+		} catch (IllegalArgumentException e) {
+			err.println(e.getMessage());
+			err.print(USAGE);
+			return BAD_USAGE;
+		}
+
+		try {
+			if (cli.stream) {
+				return cli.runStream(in, out, err);
+			}
+			return cli.runOnce(in, out, err);
+		} catch (IOException e) {
+			err.println("Could not read input: " + e.getMessage());
+			return BAD_USAGE;
+		}
+	}
+
+	/**
+	 * Makes the password for one request
+	 * 
+	 * @param seedChars the characters of the seed
+	 * @param moves the moves, as text
+	 * @return the password
+	 * @throws IllegalArgumentException if a move cannot be read or played
+	 */
+	String derive(char[] seedChars, String moves) {
+		long seedValue = PasswordDeriver.seedOf(seedChars, kdf);
+		play(moves);
+		return builder.getPassword(seedValue, options, game.getRecordBook());
+	}
+
+	/**
+	 * Wipes the boards and password the builder has kept between requests
+	 */
+	void clear() {
+		builder.clear();
+	}
+
+	/**
+	 * Plays moves into a new game
+	 * 
+	 * @param moves the moves, as text
+	 * @throws IllegalArgumentException if a move cannot be read or played
+	 */
+	private void play(String moves) {
+		if (game == null) {
+			game = new Game(size, size);
+		} else {
+			game.reset();
+		}
+
+		String[] tokens = moves.trim().split("[\\s,]+");
+		for (int i = 0; i < tokens.length; i++) {
+			String token = tokens[i];
+			if (token.isEmpty()) {
+				continue;
+			}
+			// Wide boards write a move as two numbers
+			if (isNumber(token) && i + 1 < tokens.length
+					&& isNumber(tokens[i + 1])) {
+				token = token + " " + tokens[++i];
+			}
+
+			Record r = Record.parse(token, game.getToMove());
+			if (r.wasPass()) {
+				game.pass();
+			} else if (r.getXCoor() < size && r.getYCoor() < size
+					&& game.isLegal(r.getXCoor(), r.getYCoor())) {
+				game.play(r.getXCoor(), r.getYCoor());
+			} else {
+				throw new IllegalArgumentException("Illegal move: " + token);
+			}
+		}
+	}
+
+	/**
+	 * Handles a single request
+	 * 
+	 * @param in where to read the seed and moves from
+	 * @param out where to write the password
+	 * @param err where to write errors
+	 * @return the exit status
+	 * @throws IOException if the input could not be read
+	 */
+	private int runOnce(BufferedReader in, PrintStream out, PrintStream err)
+			throws IOException {
+		char[] seedChars = seed;
+		if (seedChars == null) {
+			String line = in.readLine();
+			seedChars = line == null ? new char[0] : line.toCharArray();
+		}
+
+		String moves = argMoves;
+		if (moves == null) {
+			StringBuilder all = new StringBuilder();
+			String line;
+			while ((line = in.readLine()) != null) {
+				all.append(line).append(' ');
+			}
+			moves = all.toString();
+		}
+
+		try {
+			if (sites != null) {
+				play(moves);
+				String[] passwords = PasswordDeriver.deriveForSites(seedChars,
+						sites, game.getRecordBook(), options, kdf);
+				for (int i = 0; i < passwords.length; i++) {
+					out.println(sites.get(i) + "\t" + passwords[i]);
+				}
+				return OK;
+			}
+			out.println(derive(seedChars, moves));
+			return OK;
+		} catch (IllegalArgumentException e) {
+			err.println(e.getMessage());
+			return BAD_MOVE;
+		} finally {
+			Arrays.fill(seedChars, '\0');
+			clear();
+		}
+	}
+
+	/**
+	 * Handles one request per line until the input runs out. The boards and
+	 * password prefixes made for one request are kept for the next, and
+	 * wiped once the input runs out.
+	 * 
+	 * @param in where to read the requests from
+	 * @param out where to write the passwords
+	 * @param err where to write errors
+	 * @return the exit status
+	 * @throws IOException if the input could not be read
+	 */
+	int runStream(BufferedReader in, PrintStream out, PrintStream err)
+			throws IOException {
+		try {
+			return streamRequests(in, out, err);
+		} finally {
+			clear();
+		}
+	}
+
+	/**
+	 * Handles one request per line until the input runs out
+	 * 
+	 * @param in where to read the requests from
+	 * @param out where to write the passwords
+	 * @param err where to write errors
+	 * @return the exit status
+	 * @throws IOException if the input could not be read
+	 */
+	private int streamRequests(BufferedReader in, PrintStream out,
+			PrintStream err) throws IOException {
+		int status = OK;
+		int lineNum = 0;
+		String line;
+		while ((line = in.readLine()) != null) {
+			lineNum++;
+			char[] seedChars = seed;
+			String moves = line;
+			if (seedChars == null) {
+				int tab = line.indexOf('\t');
+				if (tab < 0) {
+					err.println("Line " + lineNum + ": expected SEED<tab>MOVES");
+					out.println();
+					out.flush();
+					status = BAD_MOVE;
+					continue;
+				}
+				seedChars = line.substring(0, tab).toCharArray();
+				moves = line.substring(tab + 1);
+			}
+
+			try {
+				out.println(derive(seedChars, moves));
+			} catch (IllegalArgumentException e) {
+				err.println("Line " + lineNum + ": " + e.getMessage());
+				out.println();
+				status = BAD_MOVE;
+			}
+			if (seedChars != seed) {
+				Arrays.fill(seedChars, '\0');
+			}
+			out.flush();
+		}
+		return status;
+	}
+
+	/**
+	 * Reads the options and moves out of the arguments
+	 * 
+	 * @param args the arguments after --cli
+	 * @return false if help was asked for
+	 * @throws IllegalArgumentException if an option is wrong
+	 */
+	private boolean parseArgs(String[] args) {
+		int scheme = EncodeBoard.SCHEME_V1;
+		int chars = 2;
+		Alphabet alphabet = Alphabet.ALL;
+		String without = null;
+		StringBuilder moves = null;
+
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if (arg.equals("--help") || arg.equals("-h")) {
+				return false;
+			} else if (arg.equals("--v2")) {
+				scheme = EncodeBoard.SCHEME_V2;
+			} else if (arg.equals("--v1")) {
+				scheme = EncodeBoard.SCHEME_V1;
+			} else if (arg.equals("--stream")) {
+				stream = true;
+			} else if (arg.startsWith("--seed=")) {
+				seed = value(arg).toCharArray();
+			} else if (arg.startsWith("--symbols=")) {
+				alphabet = symbols(value(arg));
+			} else if (arg.startsWith("--alphabet=")) {
+				alphabet = Alphabet.of(value(arg));
+			} else if (arg.startsWith("--without=")) {
+				without = value(arg);
+			} else if (arg.startsWith("--chars=")) {
+				chars = number(arg);
+			} else if (arg.startsWith("--size=")) {
+				size = number(arg);
+			} else if (arg.startsWith("--sites=")) {
+				sites = Arrays.asList(value(arg).split(",", -1));
+			} else if (arg.startsWith("--kdf=")) {
+				kdf = SeedKdf.parse(value(arg));
+			} else if (arg.equals("--calibrate")) {
+				calibrate = 1000;
+			} else if (arg.startsWith("--calibrate=")) {
+				calibrate = number(arg);
+				if (calibrate < 1) {
+					throw new IllegalArgumentException("Bad time: " + arg);
+				}
+			} else if (arg.startsWith("--")) {
+				throw new IllegalArgumentException("Unknown option: " + arg);
+			} else {
+				if (moves == null) {
+					moves = new StringBuilder();
+				}
+				moves.append(arg).append(' ');
+			}
+		}
+
+		if (size < 1 || size > RecordBook.MAX_COORDINATE + 1) {
+			throw new IllegalArgumentException("Bad board size: " + size);
+		}
+		if (scheme == EncodeBoard.SCHEME_V1 && size > 19) {
+			throw new IllegalArgumentException(
+					"Boards larger than 19 need --v2");
+		}
+		if (stream && moves != null) {
+			throw new IllegalArgumentException(
+					"Moves cannot be given with --stream");
+		}
+		if (stream && sites != null) {
+			throw new IllegalArgumentException(
+					"Sites cannot be given with --stream");
+		}
+		if (without != null) {
+			alphabet = alphabet.without(without);
+		}
+		options = new DerivationOptions(scheme, chars, alphabet);
+		argMoves = moves == null ? null : moves.toString();
+		return true;
+	}
+
+	/**
+	 * Gets the built-in alphabet for a --symbols value
+	 * 
+	 * @param mode all, some or none
+	 * @return the alphabet
+	 * @throws IllegalArgumentException if the mode is unknown
+	 */
+	private static Alphabet symbols(String mode) {
+		if (mode.equals("all")) {
+			return Alphabet.ALL;
+		} else if (mode.equals("some")) {
+			return Alphabet.SOME;
+		} else if (mode.equals("none")) {
+			return Alphabet.NONE;
+		}
+		throw new IllegalArgumentException("Unknown symbols: " + mode);
+	}
+
+	/**
+	 * Gets the value of an option
+	 * 
+	 * @param arg the option, as --name=value
+	 * @return the value
+	 */
+	private static String value(String arg) {
+		return arg.substring(arg.indexOf('=') + 1);
+	}
+
+	/**
+	 * Gets the value of an option that takes a number
+	 * 
+	 * @param arg the option, as --name=value
+	 * @return the value
+	 * @throws IllegalArgumentException if the value is not a number
+	 */
+	private static int number(String arg) {
+		try {
+			return Integer.parseInt(value(arg));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Not a number: " + arg);
+		}
+	}
+
+	/**
+	 * Whether some text is a whole number
+	 * 
+	 * @param s the text
+	 * @return whether it is made only of digits
+	 */
+	private static boolean isNumber(String s) {
+		for (int i = 0; i < s.length(); i++) {
+			if (s.charAt(i) < '0' || s.charAt(i) > '9') {
+				return false;
+			}
+		}
+		return !s.isEmpty();
+	}
+}
@@ -0,0 +1,346 @@
+package gopass;
+
+import gopass.engine.Game;
+import gopass.engine.SeedKdf;
+import gopass.engine.Stats;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Makes passwords for other programs through a Unix domain socket, so they
+ * do not have to start a JVM for each one
+ * 
+ * A client connects to the socket and sends requests the way --cli --stream
+ * reads them: one per line, as SEED<tab>MOVES, or just MOVES if the daemon
+ * was started with --seed. It gets back one line per request, the password,
+ * or an empty line if the request could not be handled. A client may send
+ * as many requests as it likes before closing the connection.
+ * 
+ * Each connection is served on a thread of its own. Every thread keeps its
+ * own game and password builder (see CommandLine) for as long as it lives,
+ * so once the daemon is warm a request costs about what the derivation
+ * itself does. The boards and password prefixes the builder makes are kept
+ * for the rest of the connection's requests and wiped when it closes. The
+ * socket is only ever a file on this machine, and it is readable and
+ * writable by its owner alone from the moment it appears: it is bound in a
+ * new directory only the owner can enter, restricted there, and only then
+ * moved into place. The daemon will not start on a file system where that
+ * cannot be done.
+ * 
+ * @author Jason Mey
+ * @version 1.0
+ */
+public final class Daemon {
+
+	/** How to use the daemon */
+	private static final String USAGE =
+			"Usage: gopass --daemon SOCKET [options]\n"
+			+ "\n"
+			+ "Listens on the Unix domain socket SOCKET. Each line a client\n"
+			+ "sends is SEED<tab>MOVES (or just MOVES with --seed), and each\n"
+			+ "line sent back is the password, or empty if the request failed.\n"
+			+ "The options are those of --cli, less the moves, --sites and\n"
+			+ "--stream.\n";
+
+	/** The exit status when the daemon was stopped */
+	private static final int OK = 0;
+
+	/** The exit status when the daemon could not be started */
+	private static final int FAILED = 1;
+
+	/** The exit status when the options were wrong */
+	private static final int BAD_USAGE = 2;
+
+	/** The number of passwords made before listening, to warm up the JIT */
+	private static final int WARM_UP_ROUNDS = 500;
+
+	/** The most moves in each warm-up game */
+	private static final int WARM_UP_MOVES = 40;
+
+	/** The name of the socket in the directory it is bound in */
+	private static final String BIND_NAME = "socket";
+
+	/** Why the daemon will not start where it cannot protect the socket */
+	private static final String NOT_PRIVATE =
+			"Cannot restrict the socket to its owner on this file system";
+
+	/** Where errors in requests go; they are not logged, as they hold moves */
+	private static final PrintStream QUIET = new PrintStream(
+			OutputStream.nullOutputStream());
+
+	/** The file the socket is bound to */
+	private final Path path;
+
+	/** The settings every connection's command line starts from */
+	private final CommandLine settings;
+
+	/** The socket clients connect to */
+	private ServerSocketChannel server;
+
+	/** The threads serving connections */
+	private final ExecutorService workers;
+
+	/** The command line of each thread, reused between its connections */
+	private final ThreadLocal<CommandLine> lines;
+
+	/**
+	 * Creates a daemon for the given socket file
+	 * 
+	 * @param path the file to bind the socket to
+	 * @param settings the settings to make passwords with
+	 */
+	private Daemon(Path path, CommandLine settings) {
+		this.path = path;
+		this.settings = settings;
+		workers = Executors.newCachedThreadPool(new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "gopass-daemon-"
+						+ count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		lines = new ThreadLocal<CommandLine>() {
+			protected CommandLine initialValue() {
+				return new CommandLine(Daemon.this.settings);
+			}
+		};
+	}
+
+	/**
+	 * Runs the daemon until it is stopped
+	 * 
+	 * @param args the socket file, then the options
+	 * @return the exit status
+	 */
+	public static int run(String[] args) {
+		if (args.length == 0 || args[0].startsWith("-")) {
+			System.err.print(USAGE);
+			return BAD_USAGE;
+		}
+		String[] options = new String[args.length - 1];
+		System.arraycopy(args, 1, options, 0, options.length);
+
+		CommandLine settings;
+		try {
+			settings = CommandLine.parse(options);
+			if (settings == null) {
+				System.out.print(USAGE);
+				return OK;
+			}
+			if (settings.hasMoves()) {
+				throw new IllegalArgumentException(
+						"Moves cannot be given to the daemon");
+			}
+			if (settings.hasSites()) {
+				throw new IllegalArgumentException(
+						"Sites cannot be given to the daemon");
+			}
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.print(USAGE);
+			return BAD_USAGE;
+		}
+
+		Daemon daemon = new Daemon(Paths.get(args[0]), settings);
+		try {
+			daemon.bind();
+		} catch (IOException e) {
+			System.err.println("Could not listen on " + args[0] + ": "
+					+ e.getMessage());
+			return FAILED;
+		}
+		return daemon.serve();
+	}
+
+	/**
+	 * Warms up the JIT and binds the socket, replacing one left behind by a
+	 * daemon that is no longer running
+	 * 
+	 * @throws IOException if the socket could not be bound
+	 */
+	private void bind() throws IOException {
+		warmUp();
+
+		UnixDomainSocketAddress address = UnixDomainSocketAddress.of(path);
+		if (Files.exists(path)) {
+			if (Files.isRegularFile(path) || Files.isDirectory(path)) {
+				throw new IOException("Not a socket");
+			}
+			boolean live;
+			try {
+				SocketChannel.open(address).close();
+				live = true;
+			} catch (IOException e) {
+				live = false;
+			}
+			if (live) {
+				throw new IOException("Another daemon is listening");
+			}
+			Files.delete(path);
+		}
+
+		// Bind where no one else can connect, and move the socket into place
+		// once only its owner may use it
+		Path parent = path.toAbsolutePath().getParent();
+		Path bindDir;
+		try {
+			bindDir = Files.createTempDirectory(parent, ".gopass-",
+					PosixFilePermissions.asFileAttribute(PosixFilePermissions
+							.fromString("rwx------")));
+		} catch (UnsupportedOperationException e) {
+			throw new IOException(NOT_PRIVATE);
+		}
+		Path bound = bindDir.resolve(BIND_NAME);
+		server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+		try {
+			server.bind(UnixDomainSocketAddress.of(bound));
+			Files.setPosixFilePermissions(bound,
+					PosixFilePermissions.fromString("rw-------"));
+			Files.move(bound, path, StandardCopyOption.ATOMIC_MOVE);
+		} catch (UnsupportedOperationException e) {
+			server.close();
+			throw new IOException(NOT_PRIVATE);
+		} catch (IOException e) {
+			server.close();
+			throw e;
+		} finally {
+			Files.deleteIfExists(bound);
+			Files.delete(bindDir);
+		}
+
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			public void run() {
+				shutDown();
+			}
+		});
+	}
+
+	/**
+	 * Accepts connections until the socket is closed
+	 * 
+	 * @return the exit status
+	 */
+	private int serve() {
+		// Counted from here, so the warm-up is left out of the statistics
+		Stats.register();
+		System.err.println("Listening on " + path);
+		try {
+			while (true) {
+				workers.execute(new Connection(server.accept()));
+			}
+		} catch (ClosedChannelException e) {
+			return OK;
+		} catch (IOException e) {
+			System.err.println("Stopped: " + e.getMessage());
+			return FAILED;
+		} finally {
+			shutDown();
+		}
+	}
+
+	/**
+	 * Closes the socket and removes its file
+	 */
+	private synchronized void shutDown() {
+		try {
+			if (server.isOpen()) {
+				server.close();
+				Files.deleteIfExists(path);
+			}
+		} catch (IOException e) {
+			// Nothing more can be done while stopping
+		}
+		workers.shutdownNow();
+	}
+
+	/**
+	 * Makes passwords for games with different seeds, so the code clients
+	 * use is compiled before the first of them connects
+	 */
+	private void warmUp() {
+		// Play a legal game the size of the daemon's board
+		Game game = new Game(settings.getSize(), settings.getSize());
+		StringBuilder moves = new StringBuilder();
+		for (int i = 0; i < settings.getSize() * settings.getSize()
+				&& game.getRecordBook().getSize() < WARM_UP_MOVES; i++) {
+			int x = i / settings.getSize();
+			int y = i % settings.getSize();
+			if (game.isLegal(x, y)) {
+				game.play(x, y);
+				int last = game.getRecordBook().getSize() - 1;
+				moves.append(game.getRecordBook().getRecord(last)).append(' ');
+			}
+		}
+
+		// Stretching the seed may take a second, so it is only done once
+		CommandLine cli = new CommandLine(settings);
+		String text = moves.toString();
+		cli.derive("warm-up".toCharArray(), text);
+		cli.setKdf(SeedKdf.LEGACY);
+		for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+			cli.derive(("warm-up " + i).toCharArray(), text);
+		}
+	}
+
+	/**
+	 * Serves the requests of one client
+	 */
+	private class Connection implements Runnable {
+
+		/** The client's end of the socket */
+		private final SocketChannel channel;
+
+		/**
+		 * Creates the server for a client
+		 * 
+		 * @param channel the client's end of the socket
+		 */
+		public Connection(SocketChannel channel) {
+			this.channel = channel;
+		}
+
+		public void run() {
+			try {
+				BufferedReader in = new BufferedReader(new InputStreamReader(
+						Channels.newInputStream(channel),
+						StandardCharsets.UTF_8));
+				PrintStream out = new PrintStream(new BufferedOutputStream(
+						Channels.newOutputStream(channel)), false,
+						StandardCharsets.UTF_8);
+				lines.get().runStream(in, out, QUIET);
+			} catch (IOException e) {
+				// The client went away
+			} finally {
+				try {
+					channel.close();
+				} catch (IOException e) {
+					// Already gone
+				}
+			}
+		}
+	}
+}
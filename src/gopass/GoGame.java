@@ -22,6 +22,15 @@ public interface GoGame {
 	 */
 	public void play(int x, int y);
 
+	/**
+	 * Whether the player to move may play at the specified location
+	 * 
+	 * @param x the x-coordinate
+	 * @param y the y-coordinate
+	 * @return whether the move is legal
+	 */
+	public boolean isLegal(int x, int y);
+
 	/**
 	 * Denotes that the player has passed on their turn
 	 */
@@ -41,6 +50,13 @@ public interface GoGame {
 	 */
 	public int getTurn();
 
+	/**
+	 * Gets the color of the player to move, which isLegal judges moves for
+	 * 
+	 * @return GoBoard.BLACK or GoBoard.WHITE
+	 */
+	public int getToMove();
+
 	/**
 	 * Ends the game and tolls the score
 	 */
@@ -11,9 +11,33 @@ package gopass;
 public final class Main {
 
 	/**
+	 * Starts the GUI, or with --cli as the first argument, the command line
+	 * (see CommandLine), or with --daemon, a server for other programs (see
+	 * Daemon). Neither of the last two loads AWT or Swing.
+	 * 
 	 * @param args command-line arguments
 	 */
 	public static void main(String[] args) {
+		if (args.length > 0 && args[0].equals("--cli")) {
+			String[] rest = new String[args.length - 1];
+			System.arraycopy(args, 1, rest, 0, rest.length);
+			System.exit(CommandLine.run(rest));
+		}
+		if (args.length > 0 && args[0].equals("--daemon")) {
+			String[] rest = new String[args.length - 1];
+			System.arraycopy(args, 1, rest, 0, rest.length);
+			System.exit(Daemon.run(rest));
+		}
+		startGUI();
+	}
+
+	/**
+	 * Starts the GUI. It is kept apart from main so the GUI classes are not
+	 * linked until they are needed. The statistics are registered for JMX
+	 * first, so the game is counted from its first move.
+	 */
+	private static void startGUI() {
+		gopass.engine.Stats.register();
 		new gopass.gui.GoGUI();
 	}
 
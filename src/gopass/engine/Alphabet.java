@@ -0,0 +1,311 @@
+package gopass.engine;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The characters a password may be made of, and how to draw them
+ * 
+ * Each alphabet is compiled once into lookup tables. The original encoding
+ * scheme draws a character by walking a small tree of tables, picking an
+ * entry of the current table with one call to nextInt; an entry is either a
+ * character or the next table to draw from. The built-in alphabets use the
+ * same tables the old if/switch ladders walked, so they call the random
+ * number generator exactly as before and give the same characters. A custom
+ * alphabet is a single table, so drawing from it is one call and one lookup.
+ * 
+ * The second encoding scheme draws straight from the whole alphabet, whose
+ * bound for unbiased draws is worked out once here.
+ * 
+ * @author Jason Mey
+ * @version 1.0
+ */
+public final class Alphabet {
+
+	/** The symbols allowed by SOME */
+	private static final String SELECT_SYMBOLS = "!@$%^*-_+=";
+
+	/** Every printable ASCII symbol */
+	private static final String ALL_SYMBOLS =
+			"!\"#$%&'()*+,-./:;<=>?@[\\]^_`{|}~";
+
+	/** Letters, numbers and every printable ASCII symbol */
+	public static final Alphabet ALL = new Alphabet(new int[][] {
+			range('!', 126 - 33) }, withSymbols(ALL_SYMBOLS));
+
+	/** Letters, numbers and the symbols !, @, $, %, ^, *, -, _, + and = */
+	public static final Alphabet SOME = new Alphabet(new int[][] {
+			concat(repeat(ref(1), 62), chars(SELECT_SYMBOLS)),
+			nonSymbolRoot(2), range('0', 57 - 48), range('A', 90 - 65),
+			range('a', 122 - 97) }, withSymbols(SELECT_SYMBOLS));
+
+	/** Letters and numbers only */
+	public static final Alphabet NONE = new Alphabet(new int[][] {
+			nonSymbolRoot(1), range('0', 57 - 48), range('A', 90 - 65),
+			range('a', 122 - 97) }, withSymbols(""));
+
+	/** Where each table starts in the entries */
+	private final int[] starts;
+
+	/** The number of entries in each table */
+	private final int[] bounds;
+
+	/** The entries of every table; a character, or -(table + 1) */
+	private final int[] entries;
+
+	/** The whole alphabet */
+	private final char[] chars;
+
+	/** The largest multiple of the alphabet's size that fits in 32 bits */
+	private final long limit;
+
+	/** The hash code, worked out once as the alphabet never changes */
+	private final int hash;
+
+	/**
+	 * Compiles an alphabet from its tables
+	 * 
+	 * @param tables the entries of each table, starting with the first to
+	 *            draw from
+	 * @param chars the whole alphabet
+	 */
+	private Alphabet(int[][] tables, char[] chars) {
+		starts = new int[tables.length];
+		bounds = new int[tables.length];
+		int total = 0;
+		for (int i = 0; i < tables.length; i++) {
+			starts[i] = total;
+			bounds[i] = tables[i].length;
+			total += tables[i].length;
+		}
+		entries = new int[total];
+		for (int i = 0; i < tables.length; i++) {
+			System.arraycopy(tables[i], 0, entries, starts[i], bounds[i]);
+		}
+		this.chars = chars;
+		limit = (1L << 32) - (1L << 32) % chars.length;
+		hash = Arrays.hashCode(chars) * 31 + Arrays.hashCode(entries);
+	}
+
+	/**
+	 * Makes an alphabet of the given characters. Repeated characters only
+	 * count once, and the characters are kept in order of their codes.
+	 * 
+	 * @param chars the characters
+	 * @return the alphabet
+	 * @throws IllegalArgumentException if there are no characters
+	 */
+	public static Alphabet of(String chars) {
+		char[] sorted = chars.toCharArray();
+		Arrays.sort(sorted);
+		int num = 0;
+		for (int i = 0; i < sorted.length; i++) {
+			if (i == 0 || sorted[i] != sorted[i - 1]) {
+				sorted[num++] = sorted[i];
+			}
+		}
+		if (num == 0) {
+			throw new IllegalArgumentException("Alphabet has no characters");
+		}
+		char[] unique = Arrays.copyOf(sorted, num);
+		return new Alphabet(new int[][] { chars(new String(unique)) }, unique);
+	}
+
+	/**
+	 * Makes an alphabet of this one's characters, leaving some out
+	 * 
+	 * @param forbidden the characters to leave out
+	 * @return the new alphabet
+	 * @throws IllegalArgumentException if no characters would be left
+	 */
+	public Alphabet without(String forbidden) {
+		StringBuilder kept = new StringBuilder(chars.length);
+		for (int i = 0; i < chars.length; i++) {
+			if (forbidden.indexOf(chars[i]) < 0) {
+				kept.append(chars[i]);
+			}
+		}
+		return of(kept.toString());
+	}
+
+	/**
+	 * Gets the built-in alphabet for one of EncodeBoard's symbol settings
+	 * 
+	 * @param useSymbols EncodeBoard.USE_ALL_SYMBOLS, USE_SOME_SYMBOLS or
+	 *            USE_NO_SYMBOLS
+	 * @return the alphabet
+	 */
+	public static Alphabet forSymbols(int useSymbols) {
+		if (useSymbols == EncodeBoard.USE_ALL_SYMBOLS) {
+			return ALL;
+		} else if (useSymbols == EncodeBoard.USE_SOME_SYMBOLS) {
+			return SOME;
+		}
+		return NONE;
+	}
+
+	/**
+	 * Gets the number of characters in the alphabet
+	 * 
+	 * @return the number of characters
+	 */
+	public int size() {
+		return chars.length;
+	}
+
+	/**
+	 * Draws a character the way the original encoding scheme does
+	 * 
+	 * @param rand the random number generator
+	 * @return the character
+	 */
+	char nextChar(Random rand) {
+		int table = 0;
+		while (true) {
+			int entry = entries[starts[table] + rand.nextInt(bounds[table])];
+			if (entry >= 0) {
+				return (char) entry;
+			}
+			table = -entry - 1;
+		}
+	}
+
+	/**
+	 * Gets the largest 32-bit draw, plus one, that the second encoding scheme
+	 * can take without favoring some characters
+	 * 
+	 * @return the bound for draws
+	 */
+	long getLimit() {
+		return limit;
+	}
+
+	/**
+	 * Gets the character for a draw below the limit
+	 * 
+	 * @param draw the draw
+	 * @return the character
+	 */
+	char charFor(long draw) {
+		return chars[(int) (draw % chars.length)];
+	}
+
+	/**
+	 * Whether another alphabet draws the same characters the same way
+	 */
+	public boolean equals(Object o) {
+		if (o == this) {
+			return true;
+		}
+		if (!(o instanceof Alphabet)) {
+			return false;
+		}
+		Alphabet other = (Alphabet) o;
+		return Arrays.equals(chars, other.chars)
+				&& Arrays.equals(bounds, other.bounds)
+				&& Arrays.equals(entries, other.entries);
+	}
+
+	public int hashCode() {
+		return hash;
+	}
+
+	/**
+	 * String form of the alphabet, its characters in order
+	 */
+	public String toString() {
+		return new String(chars);
+	}
+
+	/**
+	 * Makes the first table the original scheme uses for a non-symbol, which
+	 * picks a table of numbers, upper case or lower case letters
+	 * 
+	 * @param first the number of the table of numbers; the letter tables
+	 *            follow it
+	 * @return the table
+	 */
+	private static int[] nonSymbolRoot(int first) {
+		int[] numbers = repeat(ref(first), 10);
+		int[] upper = repeat(ref(first + 1), 26);
+		int[] lower = repeat(ref(first + 2), 26);
+		return concat(concat(numbers, upper), lower);
+	}
+
+	/**
+	 * Makes a table of characters in a row
+	 * 
+	 * @param from the first character
+	 * @param count the number of characters
+	 * @return the table
+	 */
+	private static int[] range(char from, int count) {
+		int[] table = new int[count];
+		for (int i = 0; i < count; i++) {
+			table[i] = from + i;
+		}
+		return table;
+	}
+
+	/**
+	 * Makes a table of the given characters
+	 * 
+	 * @param s the characters
+	 * @return the table
+	 */
+	private static int[] chars(String s) {
+		int[] table = new int[s.length()];
+		for (int i = 0; i < table.length; i++) {
+			table[i] = s.charAt(i);
+		}
+		return table;
+	}
+
+	/**
+	 * Makes a table with the same entry over and over
+	 * 
+	 * @param entry the entry
+	 * @param count the number of times
+	 * @return the table
+	 */
+	private static int[] repeat(int entry, int count) {
+		int[] table = new int[count];
+		Arrays.fill(table, entry);
+		return table;
+	}
+
+	/**
+	 * Joins two tables
+	 * 
+	 * @param a the first table
+	 * @param b the second table
+	 * @return the joined table
+	 */
+	private static int[] concat(int[] a, int[] b) {
+		int[] table = Arrays.copyOf(a, a.length + b.length);
+		System.arraycopy(b, 0, table, a.length, b.length);
+		return table;
+	}
+
+	/**
+	 * Gets the entry that sends a draw on to another table
+	 * 
+	 * @param table the number of the table
+	 * @return the entry
+	 */
+	private static int ref(int table) {
+		return -(table + 1);
+	}
+
+	/**
+	 * Makes an alphabet of every digit and letter, followed by some symbols
+	 * 
+	 * @param symbols the symbols to add
+	 * @return the alphabet
+	 */
+	private static char[] withSymbols(String symbols) {
+		String alphabet = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ"
+				+ "abcdefghijklmnopqrstuvwxyz" + symbols;
+		return alphabet.toCharArray();
+	}
+}
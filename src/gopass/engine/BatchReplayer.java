@@ -0,0 +1,172 @@
+package gopass.engine;
+
+import gopass.GoBoard;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Replays many recorded games at once
+ * 
+ * The record books are split between the threads of a fork/join pool. Each
+ * thread keeps one Game of its own and resets it between records, so after
+ * the first record a thread replays without making a new board, chain arrays
+ * or legal-move map. Every move is played in the color it was recorded in,
+ * so handicap stones and two moves of one color in a row replay as they were
+ * played. A replay stops at the first move that cannot be played, since
+ * every move after it would be played on a different board, and the result
+ * says which move it was.
+ * 
+ * @author Jason Mey
+ * @version 1.0
+ */
+public class BatchReplayer {
+
+	/** The number of rows on the boards */
+	private final int rows;
+
+	/** The number of columns on the boards */
+	private final int cols;
+
+	/** The pool the replays run in */
+	private final ForkJoinPool pool;
+
+	/** The game kept by each thread */
+	private final ThreadLocal<Game> games = new ThreadLocal<Game>();
+
+	/**
+	 * Creates a replayer for boards of the given size that runs in the common
+	 * fork/join pool
+	 * 
+	 * @param rows the number of rows
+	 * @param cols the number of columns
+	 */
+	public BatchReplayer(int rows, int cols) {
+		this(rows, cols, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Creates a replayer for boards of the given size
+	 * 
+	 * @param rows the number of rows
+	 * @param cols the number of columns
+	 * @param pool the pool to run the replays in
+	 */
+	public BatchReplayer(int rows, int cols, ForkJoinPool pool) {
+		this.rows = rows;
+		this.cols = cols;
+		this.pool = pool;
+	}
+
+	/**
+	 * Replays every record book, in parallel
+	 * 
+	 * @param books the record books to replay
+	 * @return the result of each record book, in the same order
+	 */
+	public ReplayResult[] replay(List<RecordBook> books) {
+		ReplayResult[] results = new ReplayResult[books.size()];
+		if (!books.isEmpty()) {
+			pool.invoke(new ReplayTask(books, results, 0, books.size()));
+		}
+		return results;
+	}
+
+	/**
+	 * Replays one record book on the calling thread
+	 * 
+	 * @param book the record book to replay
+	 * @return the result of the replay
+	 */
+	public ReplayResult replayOne(RecordBook book) {
+		Game game = games.get();
+		if (game == null) {
+			game = new Game(rows, cols);
+			games.set(game);
+		} else {
+			game.reset();
+		}
+
+		int size = book.getSize();
+		for (int i = 0; i < size; i++) {
+			int color = book.getColor(i);
+			if (color != GoBoard.BLACK && color != GoBoard.WHITE) {
+				return failed(game, i);
+			}
+			if (book.wasPass(i)) {
+				game.pass(color);
+				continue;
+			}
+
+			int x = book.getXCoor(i);
+			int y = book.getYCoor(i);
+			if (x < 0 || x >= rows || y < 0 || y >= cols
+					|| !game.play(x, y, color)) {
+				return failed(game, i);
+			}
+		}
+
+		return new ReplayResult(game.getSnapshot().withoutHistory(), -1);
+	}
+
+	/**
+	 * Makes the result of a replay that stopped at a move it could not play
+	 * 
+	 * @param game the game, as it was before the move
+	 * @param move the index of the move
+	 * @return the result
+	 */
+	private static ReplayResult failed(Game game, int move) {
+		return new ReplayResult(game.getSnapshot().withoutHistory(), move);
+	}
+
+	/**
+	 * Replays a range of the record books, splitting it in half until each
+	 * task has a single record book
+	 */
+	@SuppressWarnings("serial")
+	private class ReplayTask extends RecursiveAction {
+
+		/** The record books to replay */
+		private final List<RecordBook> books;
+
+		/** Where to put the results */
+		private final ReplayResult[] results;
+
+		/** The first index of the range */
+		private final int from;
+
+		/** The index after the last one in the range */
+		private final int to;
+
+		/**
+		 * Creates a task for a range of record books
+		 * 
+		 * @param books the record books to replay
+		 * @param results where to put the results
+		 * @param from the first index of the range
+		 * @param to the index after the last one in the range
+		 */
+		ReplayTask(List<RecordBook> books, ReplayResult[] results, int from,
+				int to) {
+			this.books = books;
+			this.results = results;
+			this.from = from;
+			this.to = to;
+		}
+
+		/**
+		 * Replays the range, or splits it between two tasks
+		 */
+		protected void compute() {
+			if (to - from == 1) {
+				results[from] = replayOne(books.get(from));
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new ReplayTask(books, results, from, mid),
+					new ReplayTask(books, results, mid, to));
+		}
+	}
+}
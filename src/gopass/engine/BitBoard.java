@@ -0,0 +1,565 @@
+package gopass.engine;
+
+import gopass.GoBoard;
+
+import java.util.Arrays;
+
+/**
+ * The logic of a Go board, kept as packed bit sets
+ * 
+ * Every intersection is one bit, numbered row by row (x * columns + y), in
+ * one set for black stones and one for white stones. Empty intersections
+ * are the ones in neither set. Sets of intersections (groups, liberties,
+ * regions) use the same layout, so neighbors, flood fills and liberties can
+ * be worked out 64 intersections at a time.
+ * 
+ * The stones are kept in chunks of 4096 intersections that are only made
+ * once a stone is placed in them, so even very large boards only take memory
+ * in proportion to the stones played. Board-wide sets such as newSet are
+ * still full size.
+ * 
+ * @author Jason Mey
+ * @version 1.0
+ */
+public class BitBoard implements GoBoard {
+
+	/** The number of rows */
+	private int rows;
+
+	/** The number of columns */
+	private int cols;
+
+	/** The number of bits of a point index that pick the bit within a chunk */
+	private static final int CHUNK_BITS = 12;
+
+	/** The number of longs in a chunk */
+	private static final int CHUNK_WORDS = 1 << (CHUNK_BITS - 6);
+
+	/** The number of intersections */
+	private int points;
+
+	/** The number of longs in each set */
+	private int words;
+
+	/** The black stones, in chunks that are null until used */
+	private long[][] black;
+
+	/** The white stones, in chunks that are null until used */
+	private long[][] white;
+
+	/** The Zobrist hash of the stones on the board */
+	private long hash;
+
+	/** Scratch sets for the bit-parallel operations, made when first used */
+	private long[] scratch, shifted;
+
+	/**
+	 * Creates a standard 19x19 board
+	 */
+	public BitBoard() {
+		this(19, 19);
+	}
+
+	/**
+	 * Creates a board with x rows and y columns
+	 * 
+	 * @param x the number of rows
+	 * @param y the number of columns
+	 * @throws IllegalArgumentException if the board has more intersections
+	 *             than an int can number
+	 */
+	public BitBoard(int x, int y) {
+		if (x <= 1) {
+			x = 2;
+		}
+		if (y <= 1) {
+			y = 2;
+		}
+		if ((long) x * y > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Board too large: " + x + "x"
+					+ y);
+		}
+
+		rows = x;
+		cols = y;
+		points = rows * cols;
+		words = (int) ((points + 63L) >>> 6);
+
+		int chunks = (int) ((points + (1L << CHUNK_BITS) - 1) >>> CHUNK_BITS);
+		black = new long[chunks][];
+		white = new long[chunks][];
+	}
+
+	/**
+	 * Places a piece on the board
+	 * 
+	 * @param x the x-coordinate of the piece
+	 * @param y the y-coordinate of the piece
+	 * @param color the color of the piece
+	 */
+	public void place(int x, int y, int color) {
+		int p = x * cols + y;
+		int old = getStoneAt(x, y);
+		if (old != EMPTY) {
+			hash ^= zobristKey(p, old);
+		}
+		if (color == BLACK || color == WHITE) {
+			hash ^= zobristKey(p, color);
+		}
+
+		clearBit(black, p);
+		clearBit(white, p);
+		if (color == BLACK) {
+			setBit(black, p);
+		} else if (color == WHITE) {
+			setBit(white, p);
+		}
+	}
+
+	/**
+	 * Takes every stone off the board, keeping the memory already made for
+	 * it so the board can be used again
+	 */
+	public void clear() {
+		for (int c = 0; c < black.length; c++) {
+			if (black[c] != null) {
+				Arrays.fill(black[c], 0L);
+			}
+			if (white[c] != null) {
+				Arrays.fill(white[c], 0L);
+			}
+		}
+		hash = 0L;
+	}
+
+	/**
+	 * Gets the number of rows
+	 * 
+	 * @return the number of rows
+	 */
+	public int getRowNum() {
+		return rows;
+	}
+
+	/**
+	 * Gets the number of columns
+	 * 
+	 * @return the number of columns
+	 */
+	public int getColNum() {
+		return cols;
+	}
+
+	/**
+	 * Gets the color of the stone at the given coordinates
+	 * 
+	 * @param x the x-coordinate of the stone
+	 * @param y the y-coordinate of the stone
+	 * @return the color of the stone
+	 */
+	public int getStoneAt(int x, int y) {
+		int p = x * cols + y;
+		if (getBit(black, p)) {
+			return BLACK;
+		} else if (getBit(white, p)) {
+			return WHITE;
+		}
+		return EMPTY;
+	}
+
+	/**
+	 * Gets the Zobrist hash of the position. Two boards of the same size with
+	 * the same stones always have the same hash, and it is kept up to date on
+	 * every place, so reading it costs nothing.
+	 * 
+	 * @return the hash of the position
+	 */
+	public long getHash() {
+		return hash;
+	}
+
+	/**
+	 * Gets the Zobrist key of a stone. The keys are worked out from the point
+	 * and color rather than stored, so they cost no memory on any board size.
+	 * 
+	 * @param p the point index (x * columns + y)
+	 * @param color the color of the stone (BLACK or WHITE)
+	 * @return the key to XOR into the hash
+	 */
+	public static long zobristKey(int p, int color) {
+		// SplitMix64 over the point and color
+		long z = (p * 2L + color) * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Creates an empty set of intersections sized for this board
+	 * 
+	 * @return the new set
+	 */
+	public long[] newSet() {
+		return new long[words];
+	}
+
+	/**
+	 * Copies the intersections of one color into a set
+	 * 
+	 * @param color the color (EMPTY, BLACK or WHITE)
+	 * @param out the set to fill
+	 */
+	public void getStones(int color, long[] out) {
+		for (int i = 0; i < words; i++) {
+			out[i] = colorWord(color, i);
+		}
+	}
+
+	/**
+	 * Counts the intersections of one color
+	 * 
+	 * @param color the color (EMPTY, BLACK or WHITE)
+	 * @return the number of intersections of that color
+	 */
+	public int countStones(int color) {
+		if (color == BLACK) {
+			return countBits(black);
+		} else if (color == WHITE) {
+			return countBits(white);
+		}
+		return points - countBits(black) - countBits(white);
+	}
+
+	/**
+	 * Finds every intersection next to a set, but not in it
+	 * 
+	 * @param set the set of intersections
+	 * @param out the set to fill with the neighbors (may not be the same set)
+	 */
+	public void neighbors(long[] set, long[] out) {
+		spread(set, out);
+		for (int i = 0; i < words; i++) {
+			out[i] &= ~set[i];
+		}
+	}
+
+	/**
+	 * Finds every intersection of a set that has no neighbor in the set. For
+	 * the empty intersections these are the points where a stone would have
+	 * no liberty of its own.
+	 * 
+	 * @param set the set of intersections
+	 * @param out the set to fill (may not be the same set)
+	 */
+	public void isolated(long[] set, long[] out) {
+		spread(set, out);
+		for (int i = 0; i < words; i++) {
+			out[i] = set[i] & ~out[i];
+		}
+	}
+
+	/**
+	 * Finds the connected region of one color holding the given intersection.
+	 * For a stone this is its group, for an empty point the empty area around
+	 * it.
+	 * 
+	 * @param x the x-coordinate of the intersection
+	 * @param y the y-coordinate of the intersection
+	 * @param out the set to fill with the region
+	 */
+	public void floodFill(int x, int y, long[] out) {
+		int color = getStoneAt(x, y);
+		for (int i = 0; i < words; i++) {
+			out[i] = 0L;
+		}
+		addPoint(out, x * cols + y);
+		makeScratch();
+
+		// Grow the region by one step at a time until it stops changing
+		boolean grew = true;
+		while (grew) {
+			grew = false;
+			dilate(out, scratch);
+			for (int i = 0; i < words; i++) {
+				long next = scratch[i] & colorWord(color, i);
+				if (next != out[i]) {
+					out[i] = next;
+					grew = true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Counts the empty intersections next to a set of stones
+	 * 
+	 * @param group the set of stones
+	 * @return the number of liberties
+	 */
+	public int countLiberties(long[] group) {
+		makeScratch();
+		spread(group, scratch);
+		int libs = 0;
+		for (int i = 0; i < words; i++) {
+			libs += Long.bitCount(scratch[i] & colorWord(EMPTY, i));
+		}
+		return libs;
+	}
+
+	/**
+	 * Adds an intersection to a set
+	 * 
+	 * @param set the set
+	 * @param p the point index (x * columns + y)
+	 */
+	public static void addPoint(long[] set, int p) {
+		set[p >>> 6] |= 1L << p;
+	}
+
+	/**
+	 * Finds the next intersection of a set, starting at a point index
+	 * 
+	 * @param set the set
+	 * @param from the point index (x * columns + y) to start from
+	 * @return the point index, or -1 if there are no more
+	 */
+	public static int nextPoint(long[] set, int from) {
+		int i = from >>> 6;
+		if (i >= set.length) {
+			return -1;
+		}
+		long word = set[i] & (-1L << from);
+		while (word == 0L) {
+			if (++i == set.length) {
+				return -1;
+			}
+			word = set[i];
+		}
+		return (i << 6) + Long.numberOfTrailingZeros(word);
+	}
+
+	/**
+	 * Prints the board in its current state
+	 */
+	public void printBoard() {
+		StringBuilder out = new StringBuilder(rows * (cols * 2 + 1) + 1);
+		for (int i = 0; i < rows; i++) {
+			for (int j = 0; j < cols; j++) {
+				out.append(getStoneAt(i, j)).append(' ');
+			}
+			out.append('\n');
+		}
+		System.out.println(out);
+	}
+
+	/**
+	 * Grows a set by one step in every direction
+	 * 
+	 * @param set the set to grow
+	 * @param out the set to fill (may not be the same set)
+	 */
+	private void dilate(long[] set, long[] out) {
+		spread(set, out);
+		for (int i = 0; i < words; i++) {
+			out[i] |= set[i];
+		}
+	}
+
+	/**
+	 * Finds every intersection next to one in a set, whether or not it is in
+	 * the set itself
+	 * 
+	 * @param set the set of intersections
+	 * @param out the set to fill (may not be the same set)
+	 */
+	private void spread(long[] set, long[] out) {
+		makeScratch();
+		shiftUp(set, 1, out);
+		for (int i = 0; i < words; i++) {
+			out[i] &= ~columnWord(i, 0);
+		}
+		shiftDown(set, 1, shifted);
+		for (int i = 0; i < words; i++) {
+			out[i] |= shifted[i] & ~columnWord(i, cols - 1);
+		}
+		shiftUp(set, cols, shifted);
+		for (int i = 0; i < words; i++) {
+			out[i] |= shifted[i];
+		}
+		shiftDown(set, cols, shifted);
+		for (int i = 0; i < words; i++) {
+			out[i] = (out[i] | shifted[i]) & boardWord(i);
+		}
+	}
+
+	/**
+	 * Makes the scratch sets, if they have not been made yet
+	 */
+	private void makeScratch() {
+		if (scratch == null) {
+			scratch = new long[words];
+			shifted = new long[words];
+		}
+	}
+
+	/**
+	 * Moves every bit of a set k places toward higher point indexes
+	 * 
+	 * @param set the set to move
+	 * @param k the number of places
+	 * @param out the set to fill
+	 */
+	private void shiftUp(long[] set, int k, long[] out) {
+		int wordShift = k >>> 6;
+		int bitShift = k & 63;
+		for (int i = words - 1; i >= 0; i--) {
+			int j = i - wordShift;
+			long value = 0L;
+			if (j >= 0) {
+				value = set[j] << bitShift;
+				if (bitShift != 0 && j > 0) {
+					value |= set[j - 1] >>> (64 - bitShift);
+				}
+			}
+			out[i] = value;
+		}
+	}
+
+	/**
+	 * Moves every bit of a set k places toward lower point indexes
+	 * 
+	 * @param set the set to move
+	 * @param k the number of places
+	 * @param out the set to fill
+	 */
+	private void shiftDown(long[] set, int k, long[] out) {
+		int wordShift = k >>> 6;
+		int bitShift = k & 63;
+		for (int i = 0; i < words; i++) {
+			int j = i + wordShift;
+			long value = 0L;
+			if (j < words) {
+				value = set[j] >>> bitShift;
+				if (bitShift != 0 && j + 1 < words) {
+					value |= set[j + 1] << (64 - bitShift);
+				}
+			}
+			out[i] = value;
+		}
+	}
+
+	/**
+	 * Gets one word of the set of intersections of a color
+	 * 
+	 * @param color the color (EMPTY, BLACK or WHITE)
+	 * @param i the word
+	 * @return the word
+	 */
+	private long colorWord(int color, int i) {
+		if (color == BLACK) {
+			return word(black, i);
+		} else if (color == WHITE) {
+			return word(white, i);
+		}
+		return ~(word(black, i) | word(white, i)) & boardWord(i);
+	}
+
+	/**
+	 * Gets one word of the set of every intersection on the board
+	 * 
+	 * @param i the word
+	 * @return the word
+	 */
+	private long boardWord(int i) {
+		int bits = points - (i << 6);
+		return bits >= 64 ? -1L : (1L << bits) - 1;
+	}
+
+	/**
+	 * Gets one word of the set of intersections in a column
+	 * 
+	 * @param i the word
+	 * @param col the column
+	 * @return the word
+	 */
+	private long columnWord(int i, int col) {
+		int base = i << 6;
+		long word = 0L;
+		int first = base + Math.floorMod(col - base, cols);
+		for (int p = first; p < base + 64; p += cols) {
+			word |= 1L << p;
+		}
+		return word;
+	}
+
+	/**
+	 * Gets one word of a chunked set
+	 * 
+	 * @param set the chunked set
+	 * @param i the word
+	 * @return the word, 0 if its chunk has not been made
+	 */
+	private static long word(long[][] set, int i) {
+		long[] chunk = set[i / CHUNK_WORDS];
+		return chunk == null ? 0L : chunk[i % CHUNK_WORDS];
+	}
+
+	/**
+	 * Counts the bits of a chunked set
+	 * 
+	 * @param set the chunked set
+	 * @return the number of bits set
+	 */
+	private static int countBits(long[][] set) {
+		int count = 0;
+		for (int c = 0; c < set.length; c++) {
+			if (set[c] != null) {
+				for (int i = 0; i < CHUNK_WORDS; i++) {
+					count += Long.bitCount(set[c][i]);
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Whether a bit of a chunked set is set
+	 * 
+	 * @param set the chunked set
+	 * @param p the point index
+	 * @return whether the bit is set
+	 */
+	private static boolean getBit(long[][] set, int p) {
+		long[] chunk = set[p >>> CHUNK_BITS];
+		return chunk != null
+				&& (chunk[(p >>> 6) % CHUNK_WORDS] & (1L << p)) != 0L;
+	}
+
+	/**
+	 * Sets a bit of a chunked set, making its chunk if needed
+	 * 
+	 * @param set the chunked set
+	 * @param p the point index
+	 */
+	private static void setBit(long[][] set, int p) {
+		long[] chunk = set[p >>> CHUNK_BITS];
+		if (chunk == null) {
+			chunk = new long[CHUNK_WORDS];
+			set[p >>> CHUNK_BITS] = chunk;
+		}
+		chunk[(p >>> 6) % CHUNK_WORDS] |= 1L << p;
+	}
+
+	/**
+	 * Clears a bit of a chunked set
+	 * 
+	 * @param set the chunked set
+	 * @param p the point index
+	 */
+	private static void clearBit(long[][] set, int p) {
+		long[] chunk = set[p >>> CHUNK_BITS];
+		if (chunk != null) {
+			chunk[(p >>> 6) % CHUNK_WORDS] &= ~(1L << p);
+		}
+	}
+}
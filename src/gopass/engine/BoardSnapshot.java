@@ -0,0 +1,290 @@
+package gopass.engine;
+
+import gopass.GoBoard;
+
+/**
+ * An unchangeable copy of the board after a move
+ * 
+ * Snapshots share everything that did not change with the snapshot before
+ * them. The intersections are kept two bits each, 32 to a long, in a tree of
+ * 32-way nodes, and a move only copies the nodes on the paths to the
+ * intersections it changed. Nothing is ever changed once a snapshot has been
+ * made, so other threads can read snapshots and walk back through the game
+ * with getPrevious without any locking.
+ * 
+ * @author Jason Mey
+ * @version 1.0
+ */
+public final class BoardSnapshot {
+
+	/** The number of bits of a point index that pick the cell in a leaf */
+	private static final int LEAF_BITS = 5;
+
+	/** The number of bits of a leaf index used at each level of the tree */
+	private static final int NODE_BITS = 5;
+
+	/** The number of children of a node */
+	private static final int NODE_SIZE = 1 << NODE_BITS;
+
+	/** The number of rows */
+	private final int rows;
+
+	/** The number of columns */
+	private final int cols;
+
+	/** The number of node levels above the leaves */
+	private final int depth;
+
+	/** The root of the tree, null while the board is empty */
+	private final Object root;
+
+	/** The number of turns played when the snapshot was taken */
+	private final int turn;
+
+	/** The Zobrist hash of the position */
+	private final long hash;
+
+	/** The number of stones black had captured */
+	private final int blackCap;
+
+	/** The number of stones white had captured */
+	private final int whiteCap;
+
+	/** The snapshot before this one, null for the empty board */
+	private final BoardSnapshot previous;
+
+	/**
+	 * Creates a snapshot of an empty board
+	 * 
+	 * @param rows the number of rows
+	 * @param cols the number of columns
+	 */
+	public BoardSnapshot(int rows, int cols) {
+		this.rows = rows;
+		this.cols = cols;
+
+		// Enough levels for every leaf to have a place in the tree
+		long cells = (long) rows * cols;
+		long leaves = (cells + (1 << LEAF_BITS) - 1) >>> LEAF_BITS;
+		int levels = 0;
+		while ((1L << (NODE_BITS * levels)) < leaves) {
+			levels++;
+		}
+		depth = levels;
+
+		root = null;
+		turn = 0;
+		hash = 0L;
+		blackCap = 0;
+		whiteCap = 0;
+		previous = null;
+	}
+
+	/**
+	 * Creates the snapshot that follows another
+	 * 
+	 * @param previous the snapshot before
+	 * @param root the root of the new tree
+	 * @param turn the number of turns played
+	 * @param hash the hash of the position
+	 * @param blackCap the number of stones black has captured
+	 * @param whiteCap the number of stones white has captured
+	 */
+	private BoardSnapshot(BoardSnapshot previous, Object root, int turn,
+			long hash, int blackCap, int whiteCap) {
+		this(previous.rows, previous.cols, previous.depth, root, turn, hash,
+				blackCap, whiteCap, previous);
+	}
+
+	/**
+	 * Creates a snapshot from all of its parts
+	 * 
+	 * @param rows the number of rows
+	 * @param cols the number of columns
+	 * @param depth the number of node levels above the leaves
+	 * @param root the root of the tree
+	 * @param turn the number of turns played
+	 * @param hash the hash of the position
+	 * @param blackCap the number of stones black has captured
+	 * @param whiteCap the number of stones white has captured
+	 * @param previous the snapshot before, or null
+	 */
+	private BoardSnapshot(int rows, int cols, int depth, Object root,
+			int turn, long hash, int blackCap, int whiteCap,
+			BoardSnapshot previous) {
+		this.rows = rows;
+		this.cols = cols;
+		this.depth = depth;
+		this.root = root;
+		this.turn = turn;
+		this.hash = hash;
+		this.blackCap = blackCap;
+		this.whiteCap = whiteCap;
+		this.previous = previous;
+	}
+
+	/**
+	 * Makes the snapshot after a stone was played
+	 * 
+	 * @param turn the number of turns played after the move
+	 * @param hash the hash of the position after the move
+	 * @param blackCap the number of stones black has captured
+	 * @param whiteCap the number of stones white has captured
+	 * @param p the point the stone was played on
+	 * @param color the color of the stone
+	 * @param removed the points taken off the board
+	 * @param removedNum the number of points taken off the board
+	 * @return the new snapshot
+	 */
+	BoardSnapshot played(int turn, long hash, int blackCap, int whiteCap,
+			int p, int color, int[] removed, int removedNum) {
+		Object newRoot = set(root, depth, p, color);
+		for (int i = 0; i < removedNum; i++) {
+			newRoot = set(newRoot, depth, removed[i], GoBoard.EMPTY);
+		}
+		return new BoardSnapshot(this, newRoot, turn, hash, blackCap,
+				whiteCap);
+	}
+
+	/**
+	 * Makes the snapshot after a pass, which shares the whole board
+	 * 
+	 * @param turn the number of turns played after the pass
+	 * @return the new snapshot
+	 */
+	BoardSnapshot passed(int turn) {
+		return new BoardSnapshot(this, root, turn, hash, blackCap, whiteCap);
+	}
+
+	/**
+	 * Makes a snapshot of the same position that does not hold on to the
+	 * snapshots before it, so they can be garbage collected
+	 * 
+	 * @return the snapshot without its history
+	 */
+	public BoardSnapshot withoutHistory() {
+		return new BoardSnapshot(rows, cols, depth, root, turn, hash, blackCap,
+				whiteCap, null);
+	}
+
+	/**
+	 * Gets the color of the stone at the given coordinates
+	 * 
+	 * @param x the x-coordinate of the stone
+	 * @param y the y-coordinate of the stone
+	 * @return the color of the stone
+	 */
+	public int getStoneAt(int x, int y) {
+		int p = x * cols + y;
+		int leaf = p >>> LEAF_BITS;
+		Object node = root;
+		for (int level = depth - 1; level >= 0 && node != null; level--) {
+			node = ((Object[]) node)[(leaf >>> (NODE_BITS * level))
+					& (NODE_SIZE - 1)];
+		}
+		if (node == null) {
+			return GoBoard.EMPTY;
+		}
+		return (int) (((Long) node).longValue() >>> cellShift(p)) & 3;
+	}
+
+	/**
+	 * Gets the number of rows
+	 * 
+	 * @return the number of rows
+	 */
+	public int getRowNum() {
+		return rows;
+	}
+
+	/**
+	 * Gets the number of columns
+	 * 
+	 * @return the number of columns
+	 */
+	public int getColNum() {
+		return cols;
+	}
+
+	/**
+	 * Gets the number of turns played when the snapshot was taken
+	 * 
+	 * @return the number of turns played
+	 */
+	public int getTurn() {
+		return turn;
+	}
+
+	/**
+	 * Gets the Zobrist hash of the position
+	 * 
+	 * @return the hash of the position
+	 */
+	public long getHash() {
+		return hash;
+	}
+
+	/**
+	 * Gets the number of stones black had captured
+	 * 
+	 * @return the number of stones black had captured
+	 */
+	public int getBlackCap() {
+		return blackCap;
+	}
+
+	/**
+	 * Gets the number of stones white had captured
+	 * 
+	 * @return the number of stones white had captured
+	 */
+	public int getWhiteCap() {
+		return whiteCap;
+	}
+
+	/**
+	 * Gets the snapshot from the turn before
+	 * 
+	 * @return the snapshot before, or null if this is the empty board
+	 */
+	public BoardSnapshot getPrevious() {
+		return previous;
+	}
+
+	/**
+	 * Copies the path to a cell and changes the cell
+	 * 
+	 * @param node the node (or leaf) to start from, null if empty
+	 * @param level the number of node levels below this one
+	 * @param p the point index of the cell
+	 * @param color the new color of the cell
+	 * @return the copied node (or leaf)
+	 */
+	private static Object set(Object node, int level, int p, int color) {
+		if (level == 0) {
+			long cells = node == null ? 0L : ((Long) node).longValue();
+			cells &= ~(3L << cellShift(p));
+			cells |= (long) color << cellShift(p);
+			return cells == 0L ? null : Long.valueOf(cells);
+		}
+
+		Object[] children = new Object[NODE_SIZE];
+		if (node != null) {
+			System.arraycopy((Object[]) node, 0, children, 0, NODE_SIZE);
+		}
+		int i = ((p >>> LEAF_BITS) >>> (NODE_BITS * (level - 1)))
+				& (NODE_SIZE - 1);
+		children[i] = set(children[i], level - 1, p, color);
+		return children;
+	}
+
+	/**
+	 * Gets where a cell sits in its leaf
+	 * 
+	 * @param p the point index of the cell
+	 * @return the shift of the cell's two bits
+	 */
+	private static int cellShift(int p) {
+		return (p & ((1 << LEAF_BITS) - 1)) * 2;
+	}
+}
@@ -0,0 +1,94 @@
+package gopass.engine;
+
+/**
+ * The settings a password is derived with: the encoding scheme, the number of
+ * characters for each move and the characters the password is made of
+ * 
+ * Options never change once made, so one set can be shared between threads.
+ * 
+ * @author Jason Mey
+ * @version 1.0
+ */
+public final class DerivationOptions {
+
+	/**
+	 * The settings the GUI starts with: the original scheme, 2 characters
+	 * per move and all symbols
+	 */
+	public static final DerivationOptions DEFAULT = new DerivationOptions(
+			EncodeBoard.SCHEME_V1, 2, Alphabet.ALL);
+
+	/** The encoding scheme */
+	private final int scheme;
+
+	/** The number of characters for each move */
+	private final int charsPerMove;
+
+	/** The characters the password is made of */
+	private final Alphabet alphabet;
+
+	/**
+	 * Creates a set of options
+	 * 
+	 * @param scheme EncodeBoard.SCHEME_V1 or SCHEME_V2
+	 * @param charsPerMove the number of characters for each move
+	 * @param alphabet the characters the password is made of
+	 * @throws IllegalArgumentException if the scheme is unknown, there are
+	 *             no characters per move, or there is no alphabet
+	 */
+	public DerivationOptions(int scheme, int charsPerMove, Alphabet alphabet) {
+		if (scheme != EncodeBoard.SCHEME_V1
+				&& scheme != EncodeBoard.SCHEME_V2) {
+			throw new IllegalArgumentException("Unknown scheme: " + scheme);
+		}
+		if (charsPerMove < 1) {
+			throw new IllegalArgumentException("Characters per move: "
+					+ charsPerMove);
+		}
+		if (alphabet == null) {
+			throw new IllegalArgumentException("No alphabet");
+		}
+		this.scheme = scheme;
+		this.charsPerMove = charsPerMove;
+		this.alphabet = alphabet;
+	}
+
+	/**
+	 * Creates a set of options using one of the built-in symbol settings
+	 * 
+	 * @param scheme EncodeBoard.SCHEME_V1 or SCHEME_V2
+	 * @param charsPerMove the number of characters for each move
+	 * @param useSymbols EncodeBoard.USE_ALL_SYMBOLS, USE_SOME_SYMBOLS or
+	 *            USE_NO_SYMBOLS
+	 */
+	public DerivationOptions(int scheme, int charsPerMove, int useSymbols) {
+		this(scheme, charsPerMove, Alphabet.forSymbols(useSymbols));
+	}
+
+	/**
+	 * Gets the encoding scheme
+	 * 
+	 * @return the encoding scheme
+	 */
+	public int getScheme() {
+		return scheme;
+	}
+
+	/**
+	 * Gets the number of characters for each move
+	 * 
+	 * @return the number of characters for each move
+	 */
+	public int getCharsPerMove() {
+		return charsPerMove;
+	}
+
+	/**
+	 * Gets the characters the password is made of
+	 * 
+	 * @return the alphabet
+	 */
+	public Alphabet getAlphabet() {
+		return alphabet;
+	}
+}
@@ -0,0 +1,38 @@
+package gopass.engine;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for a password made by PasswordBuilder
+ * 
+ * Only the settings and the length of the game are part of it; the seed,
+ * the moves and the password never are.
+ * 
+ * @author Jason Mey
+ * @version 1.0
+ */
+@Name("gopass.Derive")
+@Label("Derive Password")
+@Category({ "GoPass", "Engine" })
+@Description("A password made from the moves of a game")
+class DeriveEvent extends jdk.jfr.Event {
+
+	/** EncodeBoard.SCHEME_V1 or EncodeBoard.SCHEME_V2 */
+	@Label("Scheme")
+	int scheme;
+
+	/** The number of characters for each move */
+	@Label("Characters per Move")
+	int charsPerMove;
+
+	/** The number of characters the password is made of */
+	@Label("Alphabet Size")
+	int alphabetSize;
+
+	/** The number of moves, passes included */
+	@Label("Moves")
+	int moves;
+}
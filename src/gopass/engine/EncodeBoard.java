@@ -1,10 +1,19 @@
 package gopass.engine;
 
+import java.util.Arrays;
 import java.util.Random;
 
 /**
  * Encodes a board to generate a password
  * 
+ * There are two encoding schemes. The first (SCHEME_V1) fills the whole
+ * board from one java.util.Random, so every cell before a move has to be
+ * made to find the move's characters; it is kept so that passwords made with
+ * it can still be made again. The second (SCHEME_V2) works out each cell on
+ * its own from the seed, the chain value carried over from the moves before
+ * and the cell's coordinates, using a counter-based generator, so only the
+ * cells actually played are ever made.
+ * 
  * @author Jason Mey
  * 
  * @version 1.1.1
@@ -21,20 +30,35 @@ public class EncodeBoard {
 	/** Whether the program should use no ASCII symbols */
 	public static final int USE_NO_SYMBOLS = 2;
 
+	/** The original scheme, which encodes the whole board from one RNG */
+	public static final int SCHEME_V1 = 1;
+
+	/** The scheme that encodes each cell on its own */
+	public static final int SCHEME_V2 = 2;
+
 	/** Standard number of characters per move */
 	private static final int PER_MOVE = 2;
 
 	/** Size of the go board */
 	private static final int BOARD_SIZE = 19;
 
+	/** The golden ratio, used to spread counters and seeds apart */
+	private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
 	/** The random number generator */
 	private Random rand;
 
-	/** An array to store all of the board values */
-	private String[][] board;
+	/**
+	 * The characters of every cell, row by row, with each cell's characters
+	 * next to each other
+	 */
+	private char[] table;
 
-	/** Whether or not symbols will be used */
-	private int useSymbols;
+	/** The number of characters for each move */
+	private int charPerMove;
+
+	/** The characters the board is made of */
+	private Alphabet alphabet;
 
 	/**
 	 * Creates a randomized board given a seed
@@ -54,115 +78,204 @@ public class EncodeBoard {
 	 * @param charPerMove the number of characters for each move
 	 */
 	public EncodeBoard(long seed, int charPerMove, int useSymbols) {
+		this(seed, charPerMove, Alphabet.forSymbols(useSymbols));
+	}
+
+	/**
+	 * Creates a randomized board given a seed, number of characters per move
+	 * and the characters to use
+	 * 
+	 * @param seed the seed for the random number generator
+	 * @param charPerMove the number of characters for each move
+	 * @param alphabet the characters the board is made of
+	 */
+	public EncodeBoard(long seed, int charPerMove, Alphabet alphabet) {
 		rand = new Random(seed);
-		board = new String[BOARD_SIZE][BOARD_SIZE];
-		this.useSymbols = useSymbols;
+		table = new char[BOARD_SIZE * BOARD_SIZE * charPerMove];
+		this.charPerMove = charPerMove;
+		this.alphabet = alphabet;
+		fill();
+	}
 
-		// Encode the board with random characters
-		for (int i = 0; i < BOARD_SIZE; i++) {
-			for (int j = 0; j < BOARD_SIZE; j++) {
-				board[i][j] = "";
-				for (int x = 0; x < charPerMove; x++) {
-					board[i][j] = board[i][j] + getRandChar();
-				}
-			}
+	/**
+	 * Encodes the board again from a new seed, reusing its table. The board
+	 * comes out the same as a new board made with the seed would.
+	 * 
+	 * @param seed the seed for the random number generator
+	 */
+	public void encode(long seed) {
+		rand.setSeed(seed);
+		fill();
+	}
+
+	/**
+	 * Overwrites the table and the random number generator's state, so the
+	 * board no longer holds anything made from its seed. The board can be
+	 * used again after encode is called.
+	 */
+	public void wipe() {
+		Arrays.fill(table, '\0');
+		rand.setSeed(0);
+	}
+
+	/**
+	 * Fills the table with random characters, cell by cell in row order
+	 */
+	private void fill() {
+		boolean timed = Stats.enabled();
+		long start = timed ? System.nanoTime() : 0;
+		EncodeEvent event = new EncodeEvent();
+		event.begin();
+		for (int i = 0; i < table.length; i++) {
+			table[i] = alphabet.nextChar(rand);
+		}
+		if (timed) {
+			Stats.ENCODE.record(System.nanoTime() - start);
+		}
+		if (event.shouldCommit()) {
+			event.charsPerMove = charPerMove;
+			event.alphabetSize = alphabet.size();
+			event.commit();
 		}
 	}
 
 	/**
-	 * Generates a random ASCII character
+	 * Gets the characters for a single cell in the second scheme
+	 * 
+	 * Each character is drawn from a counter made of the cell's coordinates
+	 * and the character's place in the cell, mixed with the seed and chain.
+	 * Draws that would make some characters likelier than others are thrown
+	 * away and the next counter is used instead.
 	 * 
-	 * @return a random character
+	 * @param seed the seed for the password
+	 * @param chain the chain value from the moves before (see nextChain)
+	 * @param x the x-coordinate of the cell
+	 * @param y the y-coordinate of the cell
+	 * @param charPerMove the number of characters for each move
+	 * @param useSymbols which symbols may be used
+	 * @return the characters for the cell
 	 */
-	private char getRandChar() {
-		if (useSymbols == USE_ALL_SYMBOLS) {
-			// Only give us characters at least at ASCII 33 (!)
-			// but no higher than ASCII 126 (~)
-			return (char) (rand.nextInt(126 - 33) + 33);
-		} else if (useSymbols == USE_SOME_SYMBOLS) {
-			return getSelectSymbol();
-		} else {
-			return getNonSymbol();
-		}
+	public static String encodeCell(long seed, long chain, int x, int y,
+			int charPerMove, int useSymbols) {
+		char[] out = new char[charPerMove];
+		encodeCell(seed, chain, x, y, charPerMove,
+				Alphabet.forSymbols(useSymbols), out, 0);
+		return new String(out);
 	}
 
 	/**
-	 * This method can return any ASCII letter or number and some symbols.
-	 * Specifically, not <, >, {, }, [, ], /, \, |, ', ", ;, &, #, ~, or ?
-	 * Instead, only use !, @, $, %, ^, *, -, _, +, or =
+	 * Works out the characters for a single cell in the second scheme,
+	 * putting them into a buffer
 	 * 
-	 * @return a random, but select, character
+	 * @param seed the seed for the password
+	 * @param chain the chain value from the moves before (see nextChain)
+	 * @param x the x-coordinate of the cell
+	 * @param y the y-coordinate of the cell
+	 * @param charPerMove the number of characters for each move
+	 * @param alphabet the characters to draw from
+	 * @param out the buffer to put the characters in
+	 * @param offset where in the buffer to start
 	 */
-	private char getSelectSymbol() {
-		// Find out if the character should be a number, upper case letter,
-		// lower case letter, or symbol
-		int type = rand.nextInt(72);
-
-		// Return a non-symbol
-		if (type < 62) {
-			return getNonSymbol();
-		}
+	public static void encodeCell(long seed, long chain, int x, int y,
+			int charPerMove, Alphabet alphabet, char[] out, int offset) {
+		long key = mix(mix(seed) ^ chain);
+		long cell = ((long) x << 32 | (y & 0xFFFFFFFFL)) * GOLDEN;
 
-		// Otherwise, give us a select symbol
-		switch (type) {
-		case 62:
-			return '!';
-		case 63:
-			return '@';
-		case 64:
-			return '$';
-		case 65:
-			return '%';
-		case 66:
-			return '^';
-		case 67:
-			return '*';
-		case 68:
-			return '-';
-		case 69:
-			return '_';
-		case 70:
-			return '+';
+		// Only take draws below the largest multiple of the alphabet size
+		long limit = alphabet.getLimit();
+
+		long counter = 0;
+		for (int i = 0; i < charPerMove; i++) {
+			long draw;
+			do {
+				draw = mix(key ^ mix(cell + counter++)) >>> 32;
+			} while (draw >= limit);
+			out[offset + i] = alphabet.charFor(draw);
 		}
+	}
 
-		// case 71:
-		return '=';
+	/**
+	 * Gets the chain value for the move after a move in the second scheme
+	 * 
+	 * @param chain the chain value used for the move, 0 for the first move
+	 * @param chars the characters the move gave
+	 * @return the chain value for the next move
+	 */
+	public static long nextChain(long chain, String chars) {
+		return nextChain(chain, chars.toCharArray(), 0, chars.length());
 	}
 
 	/**
-	 * Gets a character that is not a symbol
+	 * Gets the chain value for the move after a move in the second scheme
 	 * 
-	 * @return a random non-symbol character
+	 * @param chain the chain value used for the move, 0 for the first move
+	 * @param chars a buffer holding the characters the move gave
+	 * @param offset where the characters start in the buffer
+	 * @param length the number of characters
+	 * @return the chain value for the next move
 	 */
-	private char getNonSymbol() {
-		// Find out if the character should be a number, upper case letter, or
-		// lower case letter
-		int type = rand.nextInt(62);
+	public static long nextChain(long chain, char[] chars, int offset,
+			int length) {
+		long value = chain ^ length;
+		for (int i = 0; i < length; i++) {
+			value = mix(value + chars[offset + i] * GOLDEN);
+		}
+		return mix(value + GOLDEN);
+	}
 
-		int nonSymbol = 0;
+	/**
+	 * Scrambles the bits of a value (the SplitMix64 finalizer)
+	 * 
+	 * @param z the value
+	 * @return the scrambled value
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
 
-		// Give us a number
-		if (type < 10) {
-			nonSymbol = rand.nextInt(57 - 48) + 48;
-		}
-		// Give us an uppercase letter
-		else if (type < 36) {
-			nonSymbol = rand.nextInt(90 - 65) + 65;
-		}
-		// Give us a lowercase letter
-		else {
-			nonSymbol = rand.nextInt(122 - 97) + 97;
+	/**
+	 * Copies the characters of a cell into a buffer
+	 * 
+	 * @param x the x-coordinate of the cell
+	 * @param y the y-coordinate of the cell
+	 * @param out the buffer to copy into
+	 * @param offset where in the buffer to start
+	 * @return the number of characters copied
+	 */
+	public int getCell(int x, int y, char[] out, int offset) {
+		if (x < 0 || x >= BOARD_SIZE || y < 0 || y >= BOARD_SIZE) {
+			throw new IndexOutOfBoundsException("Cell: " + x + ", " + y);
 		}
+		System.arraycopy(table, (x * BOARD_SIZE + y) * charPerMove, out,
+				offset, charPerMove);
+		return charPerMove;
+	}
 
-		return (char) nonSymbol;
+	/**
+	 * Gets the number of characters in each cell
+	 * 
+	 * @return the number of characters for each move
+	 */
+	public int getCharsPerMove() {
+		return charPerMove;
 	}
 
 	/**
-	 * Gets the board after it is generated
+	 * Gets the board after it is generated. The board is copied out of the
+	 * table each time, so getCell should be used instead where speed matters.
 	 * 
 	 * @return the randomized board
 	 */
 	public String[][] getBoard() {
+		String[][] board = new String[BOARD_SIZE][BOARD_SIZE];
+		for (int i = 0; i < BOARD_SIZE; i++) {
+			for (int j = 0; j < BOARD_SIZE; j++) {
+				board[i][j] = new String(table, (i * BOARD_SIZE + j)
+						* charPerMove, charPerMove);
+			}
+		}
 		return board;
 	}
 }
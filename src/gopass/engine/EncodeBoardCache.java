@@ -0,0 +1,202 @@
+package gopass.engine;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the boards encoded for the original scheme, so a board asked for
+ * again with the same seed, characters per move and alphabet is not made
+ * over again
+ * 
+ * The cache holds at most a set number of boards, and forgets a board that
+ * has not been used for a set time; the board used least recently goes
+ * first. Every board it lets go of is wiped, so the characters it held do
+ * not stay on the heap until the garbage collector gets to them. When the
+ * cache is full, the board let go of is encoded again for the new seed if it
+ * has the right shape, rather than making a new one.
+ * 
+ * Boards that are too old are only noticed when the cache is used, so clear
+ * should be called once the passwords are no longer needed. A cache is not
+ * safe to share between threads.
+ * 
+ * @author Jason Mey
+ * @version 1.0
+ */
+public class EncodeBoardCache {
+
+	/** The boards, least recently used first */
+	private final LinkedHashMap<Key, Entry> boards;
+
+	/** The most boards kept */
+	private final int maxBoards;
+
+	/** How long a board is kept without being used, in nanoseconds */
+	private final long maxAge;
+
+	/**
+	 * Creates an empty cache
+	 * 
+	 * @param maxBoards the most boards to keep
+	 * @param maxAgeMillis how long to keep a board that is not used, in
+	 *            milliseconds
+	 * @throws IllegalArgumentException if either bound is not positive
+	 */
+	public EncodeBoardCache(int maxBoards, long maxAgeMillis) {
+		if (maxBoards < 1) {
+			throw new IllegalArgumentException("Bad cache size: " + maxBoards);
+		}
+		if (maxAgeMillis < 1) {
+			throw new IllegalArgumentException("Bad cache age: "
+					+ maxAgeMillis);
+		}
+		this.maxBoards = maxBoards;
+		this.maxAge = maxAgeMillis * 1000000L;
+		boards = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+	}
+
+	/**
+	 * Gets the board for a seed, encoding it if it is not kept
+	 * 
+	 * @param seed the seed for the random number generator
+	 * @param charPerMove the number of characters for each move
+	 * @param alphabet the characters the board is made of
+	 * @return the board; it belongs to the cache, and should not be kept
+	 *         after the cache is used again
+	 */
+	public EncodeBoard get(long seed, int charPerMove, Alphabet alphabet) {
+		long now = System.nanoTime();
+		expire(now);
+
+		Key key = new Key(seed, charPerMove, alphabet);
+		Entry entry = boards.get(key);
+		if (entry != null) {
+			entry.lastUsed = now;
+			return entry.board;
+		}
+
+		EncodeBoard board = null;
+		if (boards.size() >= maxBoards) {
+			// Make room, encoding the board let go of again if it fits
+			Iterator<Map.Entry<Key, Entry>> eldest = boards.entrySet()
+					.iterator();
+			Map.Entry<Key, Entry> e = eldest.next();
+			eldest.remove();
+			Key old = e.getKey();
+			if (old.charPerMove == charPerMove
+					&& old.alphabet.equals(alphabet)) {
+				board = e.getValue().board;
+				board.encode(seed);
+			} else {
+				e.getValue().board.wipe();
+			}
+		}
+		if (board == null) {
+			board = new EncodeBoard(seed, charPerMove, alphabet);
+		}
+		boards.put(key, new Entry(board, now));
+		return board;
+	}
+
+	/**
+	 * Wipes and forgets every board
+	 */
+	public void clear() {
+		for (Entry entry : boards.values()) {
+			entry.board.wipe();
+		}
+		boards.clear();
+	}
+
+	/**
+	 * Gets the number of boards kept
+	 * 
+	 * @return the number of boards
+	 */
+	public int size() {
+		return boards.size();
+	}
+
+	/**
+	 * Wipes and forgets the boards that have not been used for too long
+	 * 
+	 * @param now the time now, from System.nanoTime
+	 */
+	private void expire(long now) {
+		Iterator<Entry> it = boards.values().iterator();
+		while (it.hasNext()) {
+			Entry entry = it.next();
+			if (now - entry.lastUsed < maxAge) {
+				// The rest were used more recently
+				return;
+			}
+			entry.board.wipe();
+			it.remove();
+		}
+	}
+
+	/**
+	 * What a board was encoded from
+	 */
+	private static class Key {
+
+		/** The seed of the board */
+		private final long seed;
+
+		/** The number of characters for each move */
+		private final int charPerMove;
+
+		/** The characters the board is made of */
+		private final Alphabet alphabet;
+
+		/**
+		 * Creates a key
+		 * 
+		 * @param seed the seed of the board
+		 * @param charPerMove the number of characters for each move
+		 * @param alphabet the characters the board is made of
+		 */
+		public Key(long seed, int charPerMove, Alphabet alphabet) {
+			this.seed = seed;
+			this.charPerMove = charPerMove;
+			this.alphabet = alphabet;
+		}
+
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return seed == other.seed && charPerMove == other.charPerMove
+					&& alphabet.equals(other.alphabet);
+		}
+
+		public int hashCode() {
+			long h = seed * 0x9E3779B97F4A7C15L + charPerMove;
+			return (int) (h ^ (h >>> 32)) * 31 + alphabet.hashCode();
+		}
+	}
+
+	/**
+	 * A kept board, and when it was last used
+	 */
+	private static class Entry {
+
+		/** The board */
+		private final EncodeBoard board;
+
+		/** When the board was last used, from System.nanoTime */
+		private long lastUsed;
+
+		/**
+		 * Creates an entry
+		 * 
+		 * @param board the board
+		 * @param lastUsed when the board was last used
+		 */
+		public Entry(EncodeBoard board, long lastUsed) {
+			this.board = board;
+			this.lastUsed = lastUsed;
+		}
+	}
+}
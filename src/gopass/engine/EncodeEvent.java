@@ -0,0 +1,28 @@
+package gopass.engine;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for a board encoded, whether it is new or
+ * encoded again from another seed. The seed is never part of it.
+ * 
+ * @author Jason Mey
+ * @version 1.0
+ */
+@Name("gopass.Encode")
+@Label("Encode Board")
+@Category({ "GoPass", "Engine" })
+@Description("A board filled with random characters from a seed")
+class EncodeEvent extends jdk.jfr.Event {
+
+	/** The number of characters for each move */
+	@Label("Characters per Move")
+	int charsPerMove;
+
+	/** The number of characters the board is made of */
+	@Label("Alphabet Size")
+	int alphabetSize;
+}
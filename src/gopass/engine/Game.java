@@ -3,23 +3,67 @@ package gopass.engine;
 import gopass.GoBoard;
 import gopass.GoGame;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+
 /**
  * The logic of a Go game
  * 
+ * Groups of stones are kept as linked chains so that captures and suicides
+ * only cost work in proportion to the groups next to the stone played.
+ * Every position is identified by its Zobrist hash. Positional superko, which
+ * forbids a move that would bring back an earlier position, can be switched
+ * on with setSuperko. It is off by default: the original game let a stone be
+ * played on any empty intersection, ko recaptures and single-stone suicides
+ * included, and a password is only made again from the same moves if every
+ * one of them is still played.
+ * Each move records the stones it took off the board, so moves can be undone
+ * and redone without replaying the game.
+ * 
+ * While superko is on, legality is kept as a map of flags per empty point
+ * that is brought up to date after every move, so isLegal is a lookup
+ * rather than a trial play. A point only needs a flag if a stone there would
+ * capture or have no liberties, since only those moves can take the board
+ * somewhere other than the current position plus one stone. With superko
+ * off nothing reads the map, so it is not kept, and it is worked out from
+ * the whole board when superko is switched on.
+ * 
+ * After every move the game also makes a BoardSnapshot, which other threads
+ * may read while the game goes on.
+ * 
+ * Nothing here recurses, and the chain data is kept in sparse chunks like
+ * the board, so boards of 1000x1000 and more only use memory around the
+ * stones that have been played.
+ * 
  * @author Jason Mey
- * @version 1.1
+ * @version 1.2
  */
 public class Game implements GoGame {
 
 	/** Denotes a passed turn */
 	public static final int PASS = -1;
 
+	/** Flags a point where a black stone would capture or have no liberties */
+	private static final int BLACK_SENSITIVE = 1;
+
+	/** Flags a point where a white stone would capture or have no liberties */
+	private static final int WHITE_SENSITIVE = 2;
+
+	/** Flags a sensitive point the player to move may not play (superko) */
+	private static final int SUPERKO = 4;
+
+	/** Flags a point that is in the list of sensitive points */
+	private static final int LISTED = 8;
+
 	/** The Go board */
-	private Board board;
+	private BitBoard board;
 
 	/** The current turn */
 	private int turn;
 
+	/** The color of the player to move */
+	private int toMove;
+
 	/** The record book for the game */
 	private RecordBook recordBook;
 
@@ -29,8 +73,92 @@ public class Game implements GoGame {
 	/** Whether or not any stones were captured by the previous move */
 	private boolean stonesCapped;
 
-	/** Whether or not liberties have already been checked */
-	private boolean[][] checkedLiberties;
+	/** The number of columns, used to turn coordinates into point indexes */
+	private int cols;
+
+	/** The first stone (head) of the chain each stone belongs to */
+	private SparseIntArray chainHead;
+
+	/** The next stone in each chain, chains are circular lists */
+	private SparseIntArray chainNext;
+
+	/** The previous stone in each chain, so a stone can be unlinked */
+	private SparseIntArray chainPrev;
+
+	/** The number of stones in each chain, kept at the chain head */
+	private SparseIntArray chainSize;
+
+	/** The number of liberties of each chain, kept at the chain head */
+	private SparseIntArray chainLibs;
+
+	/** Marks for points already counted while counting liberties */
+	private SparseIntArray libMarks;
+
+	/** The current liberty mark, so the marks never need to be cleared */
+	private int libMark;
+
+	/** Marks for stones already visited while rebuilding chains */
+	private SparseIntArray chainMarks;
+
+	/** The current chain mark, so the marks never need to be cleared */
+	private int chainMark;
+
+	/** Stones waiting to be visited while rebuilding a chain */
+	private int[] chainStack;
+
+	/** The legality flags of each point */
+	private SparseIntArray moveFlags;
+
+	/** The points that may be flagged as sensitive */
+	private int[] sensitivePoints;
+
+	/** The number of points that may be flagged as sensitive */
+	private int sensitiveNum;
+
+	/** Points whose legality flags need to be worked out again */
+	private int[] dirtyPoints;
+
+	/** The number of points whose flags need to be worked out again */
+	private int dirtyNum;
+
+	/** Chains whose liberties need their flags worked out again */
+	private int[] dirtyChains;
+
+	/** The number of chains whose liberties need their flags worked out */
+	private int dirtyChainNum;
+
+	/** Neighbors of a point whose flags are being worked out */
+	private int[] flagAdj = new int[4];
+
+	/** The stones taken off the board by the move being played */
+	private int[] removedPoints;
+
+	/** The number of stones taken off the board by the move being played */
+	private int removedNum;
+
+	/** Neighbors of the stone being played */
+	private int[] playAdj = new int[4];
+
+	/** Heads of the enemy chains next to the stone being played */
+	private int[] playHeads = new int[4];
+
+	/** Neighbors of a stone being counted or removed */
+	private int[] chainAdj = new int[4];
+
+	/** Neighbors of a point whose chains are being rebuilt */
+	private int[] rebuildAdj = new int[4];
+
+	/** The hashes of every position there has been, and how many times */
+	private HashMap<Long, Integer> history;
+
+	/** Whether a move may not bring back an earlier position */
+	private boolean superko;
+
+	/** The snapshot of the board after the latest move */
+	private volatile BoardSnapshot snapshot;
+
+	/** Moves that have been undone and can be redone, latest last */
+	private ArrayList<Record> redoMoves;
 
 	/** The number of stones black has captured */
 	private int blackCap;
@@ -53,128 +181,321 @@ public class Game implements GoGame {
 	 * 
 	 * @param rows the number of rows for the board
 	 * @param cols the number of columns for the board
+	 * @throws IllegalArgumentException if a side is longer than a record book
+	 *             can hold
 	 */
 	public Game(int rows, int cols) {
-		board = new Board(rows, cols);
+		if (rows > RecordBook.MAX_COORDINATE + 1
+				|| cols > RecordBook.MAX_COORDINATE + 1) {
+			throw new IllegalArgumentException("Board too large to record: "
+					+ rows + "x" + cols);
+		}
+		board = new BitBoard(rows, cols);
 		turn = 0;
+		toMove = GoBoard.BLACK;
 		recordBook = new RecordBook();
-		checkedLiberties = new boolean[rows][cols];
 		gameOver = false;
 		stonesCapped = false;
+
+		// The board may have adjusted the size, so ask it for the real one
+		this.cols = board.getColNum();
+		int points = board.getRowNum() * this.cols;
+		chainHead = new SparseIntArray(points);
+		chainNext = new SparseIntArray(points);
+		chainPrev = new SparseIntArray(points);
+		chainSize = new SparseIntArray(points);
+		chainLibs = new SparseIntArray(points);
+		libMarks = new SparseIntArray(points);
+		libMark = 0;
+		chainMarks = new SparseIntArray(points);
+		chainMark = 0;
+		chainStack = new int[16];
+		removedPoints = new int[16];
+		removedNum = 0;
+		moveFlags = new SparseIntArray(points);
+		sensitivePoints = new int[16];
+		sensitiveNum = 0;
+		dirtyPoints = new int[16];
+		dirtyNum = 0;
+		dirtyChains = new int[16];
+		dirtyChainNum = 0;
+
+		history = new HashMap<Long, Integer>();
+		addHistory(board.getHash());
+		redoMoves = new ArrayList<Record>();
+		snapshot = new BoardSnapshot(board.getRowNum(), this.cols);
+	}
+
+	/**
+	 * Clears the game back to the start on an empty board. The memory already
+	 * made for the board and chains is kept, so one game can be used for many
+	 * replays.
+	 */
+	public void reset() {
+		board.clear();
+		turn = 0;
+		toMove = GoBoard.BLACK;
+		recordBook.clear();
+		gameOver = false;
+		stonesCapped = false;
+		previousPass = false;
+		blackCap = 0;
+		whiteCap = 0;
+
+		// Only listed points have flags, everything else is already clear
+		for (int i = 0; i < sensitiveNum; i++) {
+			moveFlags.set(sensitivePoints[i], 0);
+		}
+		sensitiveNum = 0;
+		dirtyNum = 0;
+		dirtyChainNum = 0;
+		removedNum = 0;
+
+		history.clear();
+		addHistory(board.getHash());
+		redoMoves.clear();
+		snapshot = new BoardSnapshot(board.getRowNum(), cols);
 	}
 
 	/**
 	 * Plays a stone at the specified location
 	 * 
+	 * Playing on an intersection that is not empty, or that would repeat an
+	 * earlier position while superko is on, does nothing.
+	 * 
 	 * @param x the x-coordinate
 	 * @param y the y-coordinate
-	 * @return whether any stones were captured
 	 */
 	public void play(int x, int y) {
-		int stoneColor = turn % 2 + 1;
-		int numCap = 0;
-		board.place(x, y, stoneColor);
-		recordBook.addRecord(x, y, stoneColor);
-
-		boolean top = false, bottom = false;
-		boolean left = false, right = false;
-
-		// If the stone is on the bottom or top row
-		if (x == board.getRowNum() - 1) {
-			bottom = true;
-		} else if (x == 0) {
-			top = true;
+		if (!isLegal(x, y)) {
+			return;
 		}
-
-		// If the stone is on the left or right edge
-		if (y == board.getColNum() - 1) {
-			right = true;
-		} else if (y == 0) {
-			left = true;
+		redoMoves.clear();
+		boolean timed = Stats.enabled();
+		long start = timed ? System.nanoTime() : 0;
+		PlayEvent event = new PlayEvent();
+		event.begin();
+		playStone(x, y);
+		event.end();
+		if (!timed && !event.shouldCommit()) {
+			return;
 		}
 
-		// Check toward the top
-		if (!top && board.getStoneAt(x - 1, y) != stoneColor
-				&& checkLiberties(x - 1, y)) {
-			numCap += removeGroup(x - 1, y);
+		// A suicide removes only the stone's own group
+		int removed = recordBook.getRecord(recordBook.getSize() - 1)
+				.getRemovedCount();
+		boolean suicide = board.getStoneAt(x, y) == GoBoard.EMPTY;
+		if (timed) {
+			Stats.recordPlay(System.nanoTime() - start, suicide ? 0 : removed,
+					suicide);
 		}
-		// Recreate the checked liberties 2D array
-		for (int i = 0; i < checkedLiberties.length; i++) {
-			for (int j = 0; j < checkedLiberties[0].length; j++) {
-				checkedLiberties[i][j] = false;
-			}
-		}
-		// Check toward the bottom
-		if (!bottom && board.getStoneAt(x + 1, y) != stoneColor
-				&& checkLiberties(x + 1, y)) {
-			numCap += removeGroup(x + 1, y);
+		if (event.shouldCommit()) {
+			event.captured = suicide ? 0 : removed;
+			event.suicide = suicide;
+			event.groupSize = suicide ? removed : getGroupSize(x, y);
+			event.commit();
 		}
-		// Recreate the checked liberties 2D array
-		for (int i = 0; i < checkedLiberties.length; i++) {
-			for (int j = 0; j < checkedLiberties[0].length; j++) {
-				checkedLiberties[i][j] = false;
-			}
+	}
+
+	/**
+	 * Plays a stone of the given color at the specified location, whoever is
+	 * to move, as a recorded game with handicap stones or two moves of one
+	 * color in a row does. The other color is to move after it.
+	 * 
+	 * @param x the x-coordinate
+	 * @param y the y-coordinate
+	 * @param color the color of the stone (GoBoard.BLACK or GoBoard.WHITE)
+	 * @return whether the stone was played; if the move was illegal nothing
+	 *         changes
+	 * @throws IllegalArgumentException if the color is not black or white
+	 */
+	public boolean play(int x, int y, int color) {
+		int mover = toMove;
+		setToMove(color);
+		if (!isLegal(x, y)) {
+			setToMove(mover);
+			return false;
 		}
-		// Check to the left
-		if (!left && board.getStoneAt(x, y - 1) != stoneColor
-				&& checkLiberties(x, y - 1)) {
-			numCap += removeGroup(x, y - 1);
+		play(x, y);
+		return true;
+	}
+
+	/**
+	 * Plays a legal stone at the specified location
+	 * 
+	 * @param x the x-coordinate
+	 * @param y the y-coordinate
+	 */
+	private void playStone(int x, int y) {
+		int stoneColor = toMove;
+		int enemyColor = GoBoard.BLACK + GoBoard.WHITE - stoneColor;
+		int numCap = 0;
+		int p = x * cols + y;
+		board.place(x, y, stoneColor);
+		removedNum = 0;
+
+		// The new stone starts out as a chain of its own
+		chainHead.set(p, p);
+		chainNext.set(p, p);
+		chainPrev.set(p, p);
+		chainSize.set(p, 1);
+
+		int adjNum = neighbors(p, playAdj);
+		for (int i = 0; i < adjNum; i++) {
+			int q = playAdj[i];
+			playHeads[i] = stoneAt(q) == enemyColor ? chainHead.get(q) : -1;
 		}
-		// Recreate the checked liberties 2D array
-		for (int i = 0; i < checkedLiberties.length; i++) {
-			for (int j = 0; j < checkedLiberties[0].length; j++) {
-				checkedLiberties[i][j] = false;
+
+		// Take the point away from each enemy chain next to the stone, and
+		// capture any chain that has no liberties left
+		for (int i = 0; i < adjNum; i++) {
+			int head = playHeads[i];
+			if (head != -1 && !seenBefore(playHeads, i)) {
+				chainLibs.set(head, chainLibs.get(head) - 1);
+				if (chainLibs.get(head) == 0) {
+					numCap += removeChain(head);
+				} else if (chainLibs.get(head) == 1) {
+					markChain(head);
+				}
 			}
 		}
-		// Check to the right
-		if (!right && board.getStoneAt(x, y + 1) != stoneColor
-				&& checkLiberties(x, y + 1)) {
-			numCap += removeGroup(x, y + 1);
+
+		// Find the friendly chains next to the stone
+		int friendNum = 0;
+		int friend = -1;
+		for (int i = 0; i < adjNum; i++) {
+			int q = playAdj[i];
+			playHeads[i] = stoneAt(q) == stoneColor ? chainHead.get(q) : -1;
+			if (playHeads[i] != -1 && !seenBefore(playHeads, i)) {
+				friendNum++;
+				friend = playHeads[i];
+			}
 		}
-		// Recreate the checked liberties 2D array
-		for (int i = 0; i < checkedLiberties.length; i++) {
-			for (int j = 0; j < checkedLiberties[0].length; j++) {
-				checkedLiberties[i][j] = false;
+
+		// Join them, only recounting liberties when chains were merged
+		int head;
+		if (friendNum == 0) {
+			head = p;
+			chainLibs.set(head, countLiberties(head));
+		} else if (friendNum == 1) {
+			int libs = chainLibs.get(friend) - 1 + newLiberties(p, friend);
+			mergeChains(friend, p);
+			head = chainHead.get(p);
+			chainLibs.set(head, libs);
+		} else {
+			for (int i = 0; i < adjNum; i++) {
+				int q = playAdj[i];
+				if (playHeads[i] != -1
+						&& chainHead.get(q) != chainHead.get(p)) {
+					mergeChains(chainHead.get(p), chainHead.get(q));
+				}
 			}
+			head = chainHead.get(p);
+			chainLibs.set(head, countLiberties(head));
 		}
 
 		// See if the player committed suicide
-		if (checkLiberties(x, y)) {
-			int suiNumCap = removeGroup(x, y);
+		int removedColor = numCap > 0 ? enemyColor : GoBoard.EMPTY;
+		if (chainLibs.get(head) == 1) {
+			markChain(head);
+		} else if (chainLibs.get(head) == 0) {
+			int suiNumCap = removeChain(head);
 			if (stoneColor == GoBoard.BLACK) {
 				whiteCap += suiNumCap;
 			} else if (stoneColor == GoBoard.WHITE) {
 				blackCap += suiNumCap;
 			}
-			board.place(x, y, GoBoard.EMPTY);
+			removedColor = stoneColor;
 		}
-		// Recreate the checked liberties 2D array
-		for (int i = 0; i < checkedLiberties.length; i++) {
-			for (int j = 0; j < checkedLiberties[0].length; j++) {
-				checkedLiberties[i][j] = false;
-			}
+
+		int[] removed = new int[removedNum * 2];
+		for (int i = 0; i < removedNum; i++) {
+			removed[i * 2] = removedPoints[i] / cols;
+			removed[i * 2 + 1] = removedPoints[i] % cols;
+			markPoint(removedPoints[i]);
+		}
+		recordBook.addRecord(x, y, stoneColor, removed, removedColor);
+		addHistory(board.getHash());
+
+		// The stone and its neighbors need their flags worked out again
+		markPoint(p);
+		adjNum = neighbors(p, playAdj);
+		for (int i = 0; i < adjNum; i++) {
+			markPoint(playAdj[i]);
 		}
 
 		turn++;
+		toMove = enemyColor;
 		if (stoneColor == GoBoard.BLACK) {
 			blackCap += numCap;
 		} else if (stoneColor == GoBoard.WHITE) {
 			whiteCap += numCap;
 		}
-		
+
 		if (numCap > 0) {
 			stonesCapped = true;
 		} else {
 			stonesCapped = false;
 		}
 		previousPass = false;
+		snapshot = snapshot.played(turn, board.getHash(), blackCap, whiteCap,
+				p, stoneColor, removedPoints, removedNum);
+		refreshMoves();
 	}
 
 	/**
 	 * Denotes that the player has passed on their turn
 	 */
 	public void pass() {
-		int stoneColor = turn % 2 + 1;
+		redoMoves.clear();
+		passTurn();
+	}
+
+	/**
+	 * Denotes that the player of the given color has passed, whoever is to
+	 * move. The other color is to move after it.
+	 * 
+	 * @param color the color passing (GoBoard.BLACK or GoBoard.WHITE)
+	 * @throws IllegalArgumentException if the color is not black or white
+	 */
+	public void pass(int color) {
+		setToMove(color);
+		pass();
+	}
+
+	/**
+	 * Gets the color of the player to move
+	 * 
+	 * @return GoBoard.BLACK or GoBoard.WHITE
+	 */
+	public int getToMove() {
+		return toMove;
+	}
+
+	/**
+	 * Makes it the given color's move, working out again which points
+	 * superko forbids it
+	 * 
+	 * @param color the color to move
+	 * @throws IllegalArgumentException if the color is not black or white
+	 */
+	private void setToMove(int color) {
+		if (color != GoBoard.BLACK && color != GoBoard.WHITE) {
+			throw new IllegalArgumentException("Not a player: " + color);
+		}
+		if (color != toMove) {
+			toMove = color;
+			if (superko) {
+				refreshMoves();
+			}
+		}
+	}
+
+	/**
+	 * Passes the turn of the player to move
+	 */
+	private void passTurn() {
+		int stoneColor = toMove;
 		recordBook.addRecord(PASS, PASS, stoneColor);
 
 		if (previousPass) {
@@ -182,7 +503,286 @@ public class Game implements GoGame {
 		}
 
 		turn++;
+		toMove = GoBoard.BLACK + GoBoard.WHITE - stoneColor;
 		previousPass = true;
+		snapshot = snapshot.passed(turn);
+		refreshMoves();
+	}
+
+	/**
+	 * Takes back the latest move. Only the stones the move touched are put
+	 * back, so this costs time in proportion to the move, not the game. A
+	 * stone that captured nothing and touched at most one stone of its own
+	 * color is simply unlinked from its chain; otherwise the chains around
+	 * the move are walked again.
+	 * 
+	 * @return the record of the move taken back, or null if there are no
+	 *         moves
+	 */
+	public Record undo() {
+		Record r = recordBook.removeLastRecord();
+		if (r == null) {
+			return null;
+		}
+
+		if (!r.wasPass()) {
+			removeHistory(board.getHash());
+
+			// Put back the removed stones, then take away the stone played
+			// (a suicide removed it along with the others)
+			int removedColor = r.getRemovedColor();
+			for (int i = 0; i < r.getRemovedCount(); i++) {
+				board.place(r.getRemovedX(i), r.getRemovedY(i), removedColor);
+			}
+			board.place(r.getXCoor(), r.getYCoor(), GoBoard.EMPTY);
+
+			// Give back the captures
+			int numCap = r.getRemovedCount();
+			if (removedColor == GoBoard.BLACK) {
+				whiteCap -= numCap;
+			} else if (removedColor == GoBoard.WHITE) {
+				blackCap -= numCap;
+			}
+
+			// Rebuild the chains around the stone and the removed stones,
+			// unless the stone can just be unlinked
+			int p = r.getXCoor() * cols + r.getYCoor();
+			if (numCap > 0 || !unlinkStone(p, r.getColor())) {
+				chainMark++;
+				rebuildAround(p);
+				for (int i = 0; i < r.getRemovedCount(); i++) {
+					rebuildAround(r.getRemovedX(i) * cols + r.getRemovedY(i));
+				}
+			}
+		}
+
+		// The player to move is the one after the move before, as it would
+		// be had the moves been played without this one
+		turn--;
+		int last = recordBook.getSize() - 1;
+		toMove = last < 0 ? GoBoard.BLACK : GoBoard.BLACK + GoBoard.WHITE
+				- recordBook.getColor(last);
+		gameOver = false;
+		redoMoves.add(r);
+		snapshot = snapshot.getPrevious();
+
+		// The flags now describe the moves before, and a pass leaves the
+		// captures flag as the last stone played set it
+		int i = recordBook.getSize() - 1;
+		previousPass = i >= 0 && recordBook.wasPass(i);
+		while (i >= 0 && recordBook.wasPass(i)) {
+			i--;
+		}
+		stonesCapped = false;
+		if (i >= 0) {
+			Record previous = recordBook.getRecord(i);
+			stonesCapped = previous.getRemovedCount() > 0
+					&& previous.getRemovedColor() != previous.getColor();
+		}
+		refreshMoves();
+		return r;
+	}
+
+	/**
+	 * Plays the latest move that was taken back again
+	 * 
+	 * @return the record of the move played, or null if there was nothing to
+	 *         redo
+	 */
+	public Record redo() {
+		if (redoMoves.isEmpty()) {
+			return null;
+		}
+
+		Record r = redoMoves.remove(redoMoves.size() - 1);
+		toMove = r.getColor();
+		if (r.wasPass()) {
+			passTurn();
+		} else {
+			playStone(r.getXCoor(), r.getYCoor());
+		}
+		return recordBook.getRecord(recordBook.getSize() - 1);
+	}
+
+	/**
+	 * Whether there is a move that can be taken back
+	 * 
+	 * @return whether there is a move to undo
+	 */
+	public boolean canUndo() {
+		return recordBook.getSize() > 0;
+	}
+
+	/**
+	 * Whether there is a move that was taken back and can be played again
+	 * 
+	 * @return whether there is a move to redo
+	 */
+	public boolean canRedo() {
+		return !redoMoves.isEmpty();
+	}
+
+	/**
+	 * Whether the player to move may play at the specified location. The
+	 * intersection has to be empty and, while superko is on, the move may not
+	 * bring back a position that has already been seen in the game.
+	 * 
+	 * @param x the x-coordinate
+	 * @param y the y-coordinate
+	 * @return whether the move is legal
+	 */
+	public boolean isLegal(int x, int y) {
+		if (board.getStoneAt(x, y) != GoBoard.EMPTY) {
+			return false;
+		}
+		if (!superko) {
+			return true;
+		}
+
+		int p = x * cols + y;
+		int stoneColor = toMove;
+		int flags = moveFlags.get(p);
+		if ((flags & sensitiveFlag(stoneColor)) != 0) {
+			return (flags & SUPERKO) == 0;
+		}
+
+		// Any other move just adds the stone to the current position
+		long hash = board.getHash() ^ BitBoard.zobristKey(p, stoneColor);
+		return !history.containsKey(hash);
+	}
+
+	/**
+	 * Switches positional superko on or off. With it off, which is how a game
+	 * starts, any empty intersection may be played, as in the original game,
+	 * so moves recorded before superko was added still make the same
+	 * passwords. It can be switched at any point in a game; switching it on
+	 * works the legality of every point out again from the whole board.
+	 * 
+	 * @param superko whether a move may not bring back an earlier position
+	 */
+	public void setSuperko(boolean superko) {
+		if (superko && !this.superko) {
+			this.superko = true;
+			rebuildMoves();
+		}
+		this.superko = superko;
+	}
+
+	/**
+	 * Whether a move may not bring back an earlier position
+	 * 
+	 * @return whether superko is on
+	 */
+	public boolean isSuperko() {
+		return superko;
+	}
+
+	/**
+	 * Gets the Zobrist hash of the current position
+	 * 
+	 * @return the hash of the current position
+	 */
+	public long getPositionHash() {
+		return board.getHash();
+	}
+
+	/**
+	 * Whether a position has come up at any point in the game
+	 * 
+	 * @param hash the hash of the position
+	 * @return whether the position has been seen
+	 */
+	public boolean hasOccurred(long hash) {
+		return history.containsKey(hash);
+	}
+
+	/**
+	 * Counts a position in the history
+	 * 
+	 * @param hash the hash of the position
+	 */
+	private void addHistory(long hash) {
+		Integer count = history.get(hash);
+		history.put(hash, count == null ? 1 : count + 1);
+	}
+
+	/**
+	 * Takes one count of a position out of the history, forgetting it once
+	 * it has none left
+	 * 
+	 * @param hash the hash of the position
+	 */
+	private void removeHistory(long hash) {
+		Integer count = history.get(hash);
+		if (count == null || count == 1) {
+			history.remove(hash);
+		} else {
+			history.put(hash, count - 1);
+		}
+	}
+
+	/**
+	 * Works out the hash of the position a stone would leave behind, without
+	 * changing the board
+	 * 
+	 * @param p the point of the stone
+	 * @param stoneColor the color of the stone
+	 * @return the hash of the resulting position
+	 */
+	private long resultingHash(int p, int stoneColor) {
+		int enemyColor = GoBoard.BLACK + GoBoard.WHITE - stoneColor;
+		long hash = board.getHash() ^ BitBoard.zobristKey(p, stoneColor);
+		boolean captures = false;
+		boolean hasLiberty = false;
+
+		int adjNum = neighbors(p, playAdj);
+		for (int i = 0; i < adjNum; i++) {
+			int q = playAdj[i];
+			int color = stoneAt(q);
+			playHeads[i] = color == GoBoard.EMPTY ? -1 : chainHead.get(q);
+			if (color == GoBoard.EMPTY) {
+				hasLiberty = true;
+			} else if (!seenBefore(playHeads, i)) {
+				// Enemy chains in atari are captured, friendly chains with
+				// another liberty keep the stone alive
+				if (color == enemyColor && chainLibs.get(playHeads[i]) == 1) {
+					hash ^= chainHash(playHeads[i]);
+					captures = true;
+				} else if (color == stoneColor
+						&& chainLibs.get(playHeads[i]) > 1) {
+					hasLiberty = true;
+				}
+			}
+		}
+
+		// A suicide takes the stone and the chains it joined off the board
+		if (!captures && !hasLiberty) {
+			hash = board.getHash();
+			for (int i = 0; i < adjNum; i++) {
+				if (stoneAt(playAdj[i]) == stoneColor
+						&& !seenBefore(playHeads, i)) {
+					hash ^= chainHash(playHeads[i]);
+				}
+			}
+		}
+		return hash;
+	}
+
+	/**
+	 * Works out the part of the position hash that comes from one chain
+	 * 
+	 * @param head the head of the chain
+	 * @return the keys of the chain's stones XORed together
+	 */
+	private long chainHash(int head) {
+		int color = stoneAt(head);
+		long hash = 0L;
+		int p = head;
+		do {
+			hash ^= BitBoard.zobristKey(p, color);
+			p = chainNext.get(p);
+		} while (p != head);
+		return hash;
 	}
 
 	/**
@@ -193,130 +793,595 @@ public class Game implements GoGame {
 	 * @return if the stone(s) is dead
 	 */
 	public boolean checkLiberties(int x, int y) {
-		checkedLiberties[x][y] = true;
-		if (board.getStoneAt(x, y) == Board.EMPTY) {
-			return false;
-		} else {
-			int color = board.getStoneAt(x, y);
-			boolean top = false, bottom = false;
-			boolean left = false, right = false;
-
-			// If the stone is on the bottom or top row
-			if (x == board.getRowNum() - 1) {
-				bottom = true;
-			} else if (x == 0) {
-				top = true;
-			}
+		return board.getStoneAt(x, y) != GoBoard.EMPTY
+				&& getLiberties(x, y) == 0;
+	}
+
+	/**
+	 * Gets the number of liberties of the group with a member at location x, y
+	 * 
+	 * @param x the x-coordinate of the group member
+	 * @param y the y-coordinate of the group member
+	 * @return the number of liberties, or 0 if the intersection is empty
+	 */
+	public int getLiberties(int x, int y) {
+		if (board.getStoneAt(x, y) == GoBoard.EMPTY) {
+			return 0;
+		}
+		return chainLibs.get(chainHead.get(x * cols + y));
+	}
+
+	/**
+	 * Gets the number of stones in the group with a member at location x, y
+	 * 
+	 * @param x the x-coordinate of the group member
+	 * @param y the y-coordinate of the group member
+	 * @return the size of the group, or 0 if the intersection is empty
+	 */
+	public int getGroupSize(int x, int y) {
+		if (board.getStoneAt(x, y) == GoBoard.EMPTY) {
+			return 0;
+		}
+		return chainSize.get(chainHead.get(x * cols + y));
+	}
+
+	/**
+	 * Removes the group of stones with a member at location x, y
+	 * 
+	 * @param x the x-coordinate of the group member
+	 * @param y the y-coordinate of the group member
+	 * @return the number of stones removed
+	 */
+	public int removeGroup(int x, int y) {
+		if (board.getStoneAt(x, y) == GoBoard.EMPTY) {
+			return 0;
+		}
+
+		removedNum = 0;
+		int numRemoved = removeChain(chainHead.get(x * cols + y));
+		for (int i = 0; i < removedNum; i++) {
+			markPoint(removedPoints[i]);
+		}
+		refreshMoves();
+		return numRemoved;
+	}
+
+	/**
+	 * Removes a whole chain from the board and gives its points back as
+	 * liberties to the chains around it
+	 * 
+	 * @param head the head of the chain
+	 * @return the number of stones removed
+	 */
+	private int removeChain(int head) {
+		RemoveGroupEvent event = new RemoveGroupEvent();
+		event.begin();
 
-			// If the stone is on the left or right edge
-			if (y == board.getColNum() - 1) {
-				right = true;
-			} else if (y == 0) {
-				left = true;
+		// Empty every point first, so that any stone left next to the chain
+		// belongs to the other color
+		int p = head;
+		do {
+			board.place(p / cols, p % cols, GoBoard.EMPTY);
+			p = chainNext.get(p);
+		} while (p != head);
+
+		// Each neighboring chain gains the point as a liberty, but only once
+		p = head;
+		do {
+			if (removedNum == removedPoints.length) {
+				removedPoints = grow(removedPoints);
 			}
+			removedPoints[removedNum++] = p;
 
-			if (!top) {
-				if (board.getStoneAt(x - 1, y) == Board.EMPTY) {
-					return false;
-				} else if (board.getStoneAt(x - 1, y) == color) {
-					if (!checkedLiberties[x - 1][y]
-							&& !checkLiberties(x - 1, y)) {
-						return false;
+			int adjNum = neighbors(p, chainAdj);
+			for (int i = 0; i < adjNum; i++) {
+				int q = chainAdj[i];
+				if (stoneAt(q) != GoBoard.EMPTY) {
+					chainAdj[i] = chainHead.get(q);
+					if (!seenBefore(chainAdj, i)) {
+						int libs = chainLibs.get(chainAdj[i]);
+						chainLibs.set(chainAdj[i], libs + 1);
+						if (libs == 1) {
+							markChain(chainAdj[i]);
+						}
 					}
+				} else {
+					chainAdj[i] = -1;
 				}
 			}
+			p = chainNext.get(p);
+		} while (p != head);
 
-			if (!bottom) {
-				if (board.getStoneAt(x + 1, y) == Board.EMPTY) {
+		int numRemoved = chainSize.get(head);
+		if (event.shouldCommit()) {
+			event.removed = numRemoved;
+			event.commit();
+		}
+		return numRemoved;
+	}
+
+	/**
+	 * Takes a stone that has just been taken off the board out of its chain,
+	 * and gives the chains next to it back the liberties they had before it
+	 * was played. This is only done when it needs no walk of the chain: the
+	 * stone touched at most one stone of its own color, so its chain cannot
+	 * fall apart, and it was not the head of the chain.
+	 * 
+	 * @param p the point of the stone, which is already empty
+	 * @param stoneColor the color of the stone
+	 * @return whether the stone was unlinked; if not, nothing was changed
+	 */
+	private boolean unlinkStone(int p, int stoneColor) {
+		int enemyColor = GoBoard.BLACK + GoBoard.WHITE - stoneColor;
+		int adjNum = neighbors(p, rebuildAdj);
+		int friend = -1;
+		for (int i = 0; i < adjNum; i++) {
+			if (stoneAt(rebuildAdj[i]) == stoneColor) {
+				if (friend != -1) {
 					return false;
-				} else if (board.getStoneAt(x + 1, y) == color) {
-					if (!checkedLiberties[x + 1][y]
-							&& !checkLiberties(x + 1, y)) {
-						return false;
-					}
 				}
+				friend = rebuildAdj[i];
 			}
+		}
 
-			if (!left) {
-				if (board.getStoneAt(x, y - 1) == Board.EMPTY) {
-					return false;
-				} else if (board.getStoneAt(x, y - 1) == color) {
-					if (!checkedLiberties[x][y - 1]
-							&& !checkLiberties(x, y - 1)) {
-						return false;
+		if (friend != -1) {
+			int head = chainHead.get(friend);
+			if (head == p) {
+				return false;
+			}
+			int prev = chainPrev.get(p);
+			int next = chainNext.get(p);
+			chainNext.set(prev, next);
+			chainPrev.set(next, prev);
+			chainSize.set(head, chainSize.get(head) - 1);
+
+			// The point is a liberty again, and the ones only the stone
+			// brought are not
+			setLiberties(head, chainLibs.get(head) + 1
+					- newLiberties(p, head));
+		}
+
+		// Each enemy chain next to the stone gets the point back, once
+		for (int i = 0; i < adjNum; i++) {
+			int q = rebuildAdj[i];
+			playHeads[i] = stoneAt(q) == enemyColor ? chainHead.get(q) : -1;
+			if (playHeads[i] != -1 && !seenBefore(playHeads, i)) {
+				setLiberties(playHeads[i], chainLibs.get(playHeads[i]) + 1);
+			}
+		}
+
+		markPoint(p);
+		for (int i = 0; i < adjNum; i++) {
+			markPoint(rebuildAdj[i]);
+		}
+		return true;
+	}
+
+	/**
+	 * Sets the number of liberties of a chain, marking its liberties for
+	 * their legality flags if the chain goes in or out of atari
+	 * 
+	 * @param head the head of the chain
+	 * @param libs the number of liberties
+	 */
+	private void setLiberties(int head, int libs) {
+		int old = chainLibs.get(head);
+		chainLibs.set(head, libs);
+		if (old == 1 || libs == 1) {
+			markChain(head);
+		}
+	}
+
+	/**
+	 * Rebuilds the chains on and next to a point from the stones on the board.
+	 * Chains already visited under the current chain mark are skipped.
+	 * 
+	 * @param p the point
+	 */
+	private void rebuildAround(int p) {
+		markPoint(p);
+		rebuildChain(p);
+		int adjNum = neighbors(p, rebuildAdj);
+		for (int i = 0; i < adjNum; i++) {
+			rebuildChain(rebuildAdj[i]);
+		}
+	}
+
+	/**
+	 * Rebuilds the chain holding a stone by walking the stones connected to it
+	 * 
+	 * @param head the stone, which becomes the head of the chain
+	 */
+	private void rebuildChain(int head) {
+		int color = stoneAt(head);
+		if (color == GoBoard.EMPTY || chainMarks.get(head) == chainMark) {
+			return;
+		}
+
+		chainMarks.set(head, chainMark);
+		chainHead.set(head, head);
+		chainNext.set(head, head);
+		chainPrev.set(head, head);
+		chainSize.set(head, 1);
+		int top = 0;
+		chainStack[top++] = head;
+
+		// Walk the chain with a stack, linking each stone in after the head
+		while (top > 0) {
+			int p = chainStack[--top];
+			int adjNum = neighbors(p, chainAdj);
+			for (int i = 0; i < adjNum; i++) {
+				int q = chainAdj[i];
+				if (stoneAt(q) == color && chainMarks.get(q) != chainMark) {
+					chainMarks.set(q, chainMark);
+					int next = chainNext.get(head);
+					chainHead.set(q, head);
+					chainNext.set(q, next);
+					chainPrev.set(next, q);
+					chainNext.set(head, q);
+					chainPrev.set(q, head);
+					chainSize.set(head, chainSize.get(head) + 1);
+					if (top == chainStack.length) {
+						chainStack = grow(chainStack);
 					}
+					chainStack[top++] = q;
 				}
 			}
+		}
+		chainLibs.set(head, countLiberties(head));
+		markChain(head);
+	}
 
-			if (!right) {
-				if (board.getStoneAt(x, y + 1) == Board.EMPTY) {
-					return false;
-				} else if (board.getStoneAt(x, y + 1) == color) {
-					if (!checkedLiberties[x][y + 1]
-							&& !checkLiberties(x, y + 1)) {
-						return false;
+	/**
+	 * Doubles the length of an array
+	 * 
+	 * @param array the array
+	 * @return a copy of the array with twice the room
+	 */
+	static int[] grow(int[] array) {
+		int[] bigger = new int[array.length * 2];
+		System.arraycopy(array, 0, bigger, 0, array.length);
+		return bigger;
+	}
+
+	/**
+	 * Adds a point to the points whose legality flags need working out
+	 * again, if superko is on
+	 * 
+	 * @param p the point
+	 */
+	private void markPoint(int p) {
+		if (!superko) {
+			return;
+		}
+		if (dirtyNum == dirtyPoints.length) {
+			dirtyPoints = grow(dirtyPoints);
+		}
+		dirtyPoints[dirtyNum++] = p;
+	}
+
+	/**
+	 * Adds a chain to the chains whose liberties need their legality flags
+	 * worked out again, if superko is on. Any stone of the chain will do.
+	 * 
+	 * @param p a stone of the chain
+	 */
+	private void markChain(int p) {
+		if (!superko) {
+			return;
+		}
+		if (dirtyChainNum == dirtyChains.length) {
+			dirtyChains = grow(dirtyChains);
+		}
+		dirtyChains[dirtyChainNum++] = p;
+	}
+
+	/**
+	 * Brings the legality flags up to date after the board or the player to
+	 * move has changed. With superko off there is nothing to do.
+	 */
+	private void refreshMoves() {
+		if (!superko) {
+			return;
+		}
+
+		// The liberties of chains that went in or out of atari
+		for (int i = 0; i < dirtyChainNum; i++) {
+			int start = dirtyChains[i];
+			if (stoneAt(start) == GoBoard.EMPTY) {
+				continue;
+			}
+			int p = start;
+			do {
+				int adjNum = neighbors(p, chainAdj);
+				for (int j = 0; j < adjNum; j++) {
+					if (stoneAt(chainAdj[j]) == GoBoard.EMPTY) {
+						markPoint(chainAdj[j]);
 					}
 				}
+				p = chainNext.get(p);
+			} while (p != start);
+		}
+		dirtyChainNum = 0;
+
+		for (int i = 0; i < dirtyNum; i++) {
+			updateFlags(dirtyPoints[i]);
+		}
+		dirtyNum = 0;
+
+		// Check superko at every sensitive point for the player to move, if
+		// it is on, and drop the points that are not sensitive any more
+		int stoneColor = toMove;
+		int kept = 0;
+		for (int i = 0; i < sensitiveNum; i++) {
+			int p = sensitivePoints[i];
+			int flags = moveFlags.get(p);
+			if ((flags & (BLACK_SENSITIVE | WHITE_SENSITIVE)) == 0) {
+				moveFlags.set(p, 0);
+				continue;
 			}
+
+			flags &= ~SUPERKO;
+			if (superko && (flags & sensitiveFlag(stoneColor)) != 0
+					&& history.containsKey(resultingHash(p, stoneColor))) {
+				flags |= SUPERKO;
+			}
+			moveFlags.set(p, flags);
+			sensitivePoints[kept++] = p;
 		}
-		return true;
+		sensitiveNum = kept;
 	}
 
 	/**
-	 * Removes the group of stones with a member at location x, y
+	 * Works out the legality flags of every point again from the whole board,
+	 * rather than from the points the latest moves touched
 	 * 
-	 * @param x the x-coordinate of the group member
-	 * @param y the y-coordinate of the group member
-	 * @return the number of stones removed
+	 * The points that may need a flag are found with the board's set
+	 * operations, 64 points at a time: the liberties of every chain in atari,
+	 * where a stone would capture, and the empty points with no empty
+	 * neighbor, where a stone could be left without liberties.
 	 */
-	public int removeGroup(int x, int y) {
-		int color = board.getStoneAt(x, y);
-		int numRemoved = 0;
-		boolean top = false, bottom = false;
-		boolean left = false, right = false;
+	private void rebuildMoves() {
+		for (int i = 0; i < sensitiveNum; i++) {
+			moveFlags.set(sensitivePoints[i], 0);
+		}
+		sensitiveNum = 0;
+		dirtyNum = 0;
+		dirtyChainNum = 0;
 
-		board.place(x, y, Board.EMPTY);
-		numRemoved++;
+		// Gather the stones of every chain in atari
+		long[] stones = board.newSet();
+		long[] atari = board.newSet();
+		for (int color = GoBoard.BLACK; color <= GoBoard.WHITE; color++) {
+			board.getStones(color, stones);
+			for (int p = BitBoard.nextPoint(stones, 0); p != -1; p = BitBoard
+					.nextPoint(stones, p + 1)) {
+				if (chainLibs.get(chainHead.get(p)) == 1) {
+					BitBoard.addPoint(atari, p);
+				}
+			}
+		}
 
-		// If the stone is on the bottom or top row
-		if (x == board.getRowNum() - 1) {
-			bottom = true;
-		} else if (x == 0) {
-			top = true;
+		// Their empty neighbors, and the empty points boxed in by stones
+		long[] empty = board.newSet();
+		long[] points = board.newSet();
+		board.getStones(GoBoard.EMPTY, empty);
+		board.neighbors(atari, points);
+		board.isolated(empty, stones);
+		for (int i = 0; i < points.length; i++) {
+			points[i] = (points[i] & empty[i]) | stones[i];
 		}
 
-		// If the stone is on the left or right edge
-		if (y == board.getColNum() - 1) {
-			right = true;
-		} else if (y == 0) {
-			left = true;
+		for (int p = BitBoard.nextPoint(points, 0); p != -1; p = BitBoard
+				.nextPoint(points, p + 1)) {
+			updateFlags(p);
 		}
+		refreshMoves();
+	}
 
-		if (!top) {
-			if (board.getStoneAt(x - 1, y) == color) {
-				numRemoved += removeGroup(x - 1, y);
+	/**
+	 * Works out whether a stone of each color at a point would capture or have
+	 * no liberties, and lists the point if so
+	 * 
+	 * @param p the point
+	 */
+	private void updateFlags(int p) {
+		int flags = moveFlags.get(p) & (LISTED | SUPERKO);
+		if (stoneAt(p) == GoBoard.EMPTY) {
+			if (isSensitive(p, GoBoard.BLACK)) {
+				flags |= BLACK_SENSITIVE;
+			}
+			if (isSensitive(p, GoBoard.WHITE)) {
+				flags |= WHITE_SENSITIVE;
 			}
 		}
 
-		if (!bottom) {
-			if (board.getStoneAt(x + 1, y) == color) {
-				numRemoved += removeGroup(x + 1, y);
+		if ((flags & (BLACK_SENSITIVE | WHITE_SENSITIVE)) != 0
+				&& (flags & LISTED) == 0) {
+			flags |= LISTED;
+			if (sensitiveNum == sensitivePoints.length) {
+				sensitivePoints = grow(sensitivePoints);
 			}
+			sensitivePoints[sensitiveNum++] = p;
 		}
+		moveFlags.set(p, flags);
+	}
 
-		if (!left) {
-			if (board.getStoneAt(x, y - 1) == color) {
-				numRemoved += removeGroup(x, y - 1);
+	/**
+	 * Whether a stone at an empty point would capture or have no liberties
+	 * 
+	 * @param p the point
+	 * @param stoneColor the color of the stone
+	 * @return whether the move is sensitive
+	 */
+	private boolean isSensitive(int p, int stoneColor) {
+		boolean captures = false;
+		boolean hasLiberty = false;
+		int adjNum = neighbors(p, flagAdj);
+		for (int i = 0; i < adjNum; i++) {
+			int q = flagAdj[i];
+			int color = stoneAt(q);
+			if (color == GoBoard.EMPTY) {
+				hasLiberty = true;
+			} else {
+				int libs = chainLibs.get(chainHead.get(q));
+				if (color == stoneColor && libs > 1) {
+					hasLiberty = true;
+				} else if (color != stoneColor && libs == 1) {
+					captures = true;
+				}
 			}
 		}
+		return captures || !hasLiberty;
+	}
 
-		if (!right) {
-			if (board.getStoneAt(x, y + 1) == color) {
-				numRemoved += removeGroup(x, y + 1);
+	/**
+	 * Gets the sensitive flag for a color
+	 * 
+	 * @param color the color
+	 * @return the flag
+	 */
+	private static int sensitiveFlag(int color) {
+		return color == GoBoard.BLACK ? BLACK_SENSITIVE : WHITE_SENSITIVE;
+	}
+
+	/**
+	 * Joins two chains, relabeling the stones of the smaller one
+	 * 
+	 * @param a the head of the first chain
+	 * @param b the head of the second chain
+	 */
+	private void mergeChains(int a, int b) {
+		if (chainSize.get(a) < chainSize.get(b)) {
+			int swap = a;
+			a = b;
+			b = swap;
+		}
+
+		int p = b;
+		do {
+			chainHead.set(p, a);
+			p = chainNext.get(p);
+		} while (p != b);
+
+		// Splice the two circular lists together
+		int nextA = chainNext.get(a);
+		int nextB = chainNext.get(b);
+		chainNext.set(a, nextB);
+		chainPrev.set(nextB, a);
+		chainNext.set(b, nextA);
+		chainPrev.set(nextA, b);
+		chainSize.set(a, chainSize.get(a) + chainSize.get(b));
+	}
+
+	/**
+	 * Counts the empty points next to a stone that are not already liberties
+	 * of a chain it is joining
+	 * 
+	 * @param p the stone, whose neighbors are in playAdj
+	 * @param head the head of the chain
+	 * @return the number of liberties the stone adds to the chain
+	 */
+	private int newLiberties(int p, int head) {
+		int color = stoneAt(head);
+		int libs = 0;
+		int adjNum = neighbors(p, playAdj);
+		for (int i = 0; i < adjNum; i++) {
+			int q = playAdj[i];
+			if (stoneAt(q) != GoBoard.EMPTY) {
+				continue;
+			}
+
+			boolean counted = false;
+			int qAdjNum = neighbors(q, chainAdj);
+			for (int j = 0; j < qAdjNum && !counted; j++) {
+				int r = chainAdj[j];
+				counted = r != p && stoneAt(r) == color
+						&& chainHead.get(r) == head;
+			}
+			if (!counted) {
+				libs++;
 			}
 		}
+		return libs;
+	}
 
-		return numRemoved;
+	/**
+	 * Counts the liberties of a chain, counting each empty point only once
+	 * 
+	 * @param head the head of the chain
+	 * @return the number of liberties
+	 */
+	private int countLiberties(int head) {
+		libMark++;
+		int libs = 0;
+		int p = head;
+		do {
+			int adjNum = neighbors(p, chainAdj);
+			for (int i = 0; i < adjNum; i++) {
+				int q = chainAdj[i];
+				if (stoneAt(q) == GoBoard.EMPTY && libMarks.get(q) != libMark) {
+					libMarks.set(q, libMark);
+					libs++;
+				}
+			}
+			p = chainNext.get(p);
+		} while (p != head);
+		return libs;
+	}
+
+	/**
+	 * Finds the points next to a point
+	 * 
+	 * @param p the point
+	 * @param adj the array to fill with the neighboring points
+	 * @return the number of neighbors found
+	 */
+	private int neighbors(int p, int[] adj) {
+		int x = p / cols;
+		int y = p % cols;
+		int num = 0;
+
+		// Check toward the top, bottom, left and right
+		if (x > 0) {
+			adj[num++] = p - cols;
+		}
+		if (x < board.getRowNum() - 1) {
+			adj[num++] = p + cols;
+		}
+		if (y > 0) {
+			adj[num++] = p - 1;
+		}
+		if (y < cols - 1) {
+			adj[num++] = p + 1;
+		}
+		return num;
+	}
+
+	/**
+	 * Whether an earlier entry of the array names the same chain as entry i
+	 * 
+	 * @param heads the chain heads
+	 * @param i the entry to check
+	 * @return whether the chain has already been seen
+	 */
+	private boolean seenBefore(int[] heads, int i) {
+		for (int j = 0; j < i; j++) {
+			if (heads[j] == heads[i]) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Gets the color of the stone at a point
+	 * 
+	 * @param p the point
+	 * @return the color of the stone
+	 */
+	private int stoneAt(int p) {
+		return board.getStoneAt(p / cols, p % cols);
 	}
 
 	/**
@@ -344,6 +1409,16 @@ public class Game implements GoGame {
 		return board;
 	}
 
+	/**
+	 * Gets the snapshot of the board after the latest move. Snapshots never
+	 * change, so they can be handed to other threads.
+	 * 
+	 * @return the latest snapshot
+	 */
+	public BoardSnapshot getSnapshot() {
+		return snapshot;
+	}
+
 	/**
 	 * Gets the game record
 	 * 
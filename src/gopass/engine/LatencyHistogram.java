@@ -0,0 +1,93 @@
+package gopass.engine;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * Counts how long something took, in buckets that double in size
+ * 
+ * Bucket i holds the times below 2^i nanoseconds that did not fit in the
+ * bucket before, so the buckets cover everything from a nanosecond to hours
+ * with about as much precision as a timing can be trusted to have. Every
+ * bucket is a LongAdder, so threads recording at once do not fight over one
+ * counter, and recording never waits on someone reading.
+ * 
+ * @author Jason Mey
+ * @version 1.0
+ */
+public final class LatencyHistogram {
+
+	/** The number of buckets; the last holds everything above 2^46 ns */
+	static final int BUCKETS = 48;
+
+	/** Keeps the larger of two values */
+	private static final LongBinaryOperator MAX = new LongBinaryOperator() {
+		public long applyAsLong(long a, long b) {
+			return Math.max(a, b);
+		}
+	};
+
+	/** The number of times in each bucket */
+	private final LongAdder[] buckets;
+
+	/** The total of the times, in nanoseconds */
+	private final LongAdder total;
+
+	/** The longest time, in nanoseconds */
+	private final LongAccumulator max;
+
+	/**
+	 * Creates an empty histogram
+	 */
+	public LatencyHistogram() {
+		buckets = new LongAdder[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			buckets[i] = new LongAdder();
+		}
+		total = new LongAdder();
+		max = new LongAccumulator(MAX, 0);
+	}
+
+	/**
+	 * Counts one time
+	 * 
+	 * @param nanos how long it took, in nanoseconds
+	 */
+	public void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		int bucket = 64 - Long.numberOfLeadingZeros(nanos);
+		buckets[Math.min(bucket, BUCKETS - 1)].increment();
+		total.add(nanos);
+		max.accumulate(nanos);
+	}
+
+	/**
+	 * Forgets every time counted
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			buckets[i].reset();
+		}
+		total.reset();
+		max.reset();
+	}
+
+	/**
+	 * Sums up the times counted so far. Times counted while the summary is
+	 * made may or may not be in it.
+	 * 
+	 * @return the summary
+	 */
+	public LatencySummary summarize() {
+		long[] counts = new long[BUCKETS];
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = buckets[i].sum();
+			count += counts[i];
+		}
+		return new LatencySummary(count, total.sum(), max.get(), counts);
+	}
+}
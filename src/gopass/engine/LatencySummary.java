@@ -0,0 +1,135 @@
+package gopass.engine;
+
+/**
+ * A summary of the times counted by a LatencyHistogram, as JMX shows it
+ * 
+ * Percentiles are read off the buckets, so each is the top of the bucket the
+ * time falls in: no more than twice the real time, and never less.
+ * 
+ * @author Jason Mey
+ * @version 1.0
+ */
+public class LatencySummary {
+
+	/** The number of times counted */
+	private final long count;
+
+	/** The total of the times, in nanoseconds */
+	private final long totalNanos;
+
+	/** The longest time, in nanoseconds */
+	private final long maxNanos;
+
+	/** The number of times in each bucket */
+	private final long[] buckets;
+
+	/**
+	 * Creates a summary
+	 * 
+	 * @param count the number of times counted
+	 * @param totalNanos the total of the times, in nanoseconds
+	 * @param maxNanos the longest time, in nanoseconds
+	 * @param buckets the number of times in each bucket
+	 */
+	LatencySummary(long count, long totalNanos, long maxNanos, long[] buckets) {
+		this.count = count;
+		this.totalNanos = totalNanos;
+		this.maxNanos = maxNanos;
+		this.buckets = buckets;
+	}
+
+	/**
+	 * Gets the number of times counted
+	 * 
+	 * @return the number of times
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Gets the average time
+	 * 
+	 * @return the average, in microseconds
+	 */
+	public double getMeanMicros() {
+		return count == 0 ? 0 : totalNanos / 1000.0 / count;
+	}
+
+	/**
+	 * Gets the time half the times were no longer than
+	 * 
+	 * @return the median, in microseconds
+	 */
+	public double getP50Micros() {
+		return percentile(0.50);
+	}
+
+	/**
+	 * Gets the time nine in ten of the times were no longer than
+	 * 
+	 * @return the 90th percentile, in microseconds
+	 */
+	public double getP90Micros() {
+		return percentile(0.90);
+	}
+
+	/**
+	 * Gets the time 99 in 100 of the times were no longer than
+	 * 
+	 * @return the 99th percentile, in microseconds
+	 */
+	public double getP99Micros() {
+		return percentile(0.99);
+	}
+
+	/**
+	 * Gets the longest time
+	 * 
+	 * @return the longest time, in microseconds
+	 */
+	public double getMaxMicros() {
+		return maxNanos / 1000.0;
+	}
+
+	/**
+	 * Gets the number of times in each bucket. Bucket i holds the times of at
+	 * least 2^(i-1) and less than 2^i nanoseconds.
+	 * 
+	 * @return the counts
+	 */
+	public long[] getBuckets() {
+		return buckets.clone();
+	}
+
+	/**
+	 * Gets the top of the bucket a percentile falls in
+	 * 
+	 * @param fraction the percentile, from 0 to 1
+	 * @return the time, in microseconds
+	 */
+	private double percentile(double fraction) {
+		if (count == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(count * fraction);
+		long seen = 0;
+		for (int i = 0; i < buckets.length; i++) {
+			seen += buckets[i];
+			if (seen >= rank) {
+				// Nothing counted was longer than the longest time
+				return Math.min(1L << i, maxNanos) / 1000.0;
+			}
+		}
+		return maxNanos / 1000.0;
+	}
+
+	/**
+	 * String form of the summary, for logs
+	 */
+	public String toString() {
+		return String.format("%d, mean %.1fus, p50 %.1fus, p99 %.1fus, "
+				+ "max %.1fus", count, getMeanMicros(), getP50Micros(),
+				getP99Micros(), getMaxMicros());
+	}
+}
@@ -0,0 +1,317 @@
+package gopass.engine;
+
+import gopass.GoBoard;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a file in GoPass's compact binary move format (see MoveWriter)
+ * 
+ * The file is memory-mapped rather than read, so the games are decoded
+ * straight out of the page cache and nothing is copied onto the heap unless
+ * asked for with readRecordBook. Games are walked through with nextGame and
+ * the moves of the current game with nextMove; a game's moves never have to
+ * be looked at to skip past it. Every read is checked against the end of the
+ * game, so a file that is cut short or corrupt gives an IOException rather
+ * than reading past the end of the mapping.
+ * 
+ * @author Jason Mey
+ * @version 1.0
+ */
+public class MoveReader {
+
+	/** The mapped file */
+	private final MappedByteBuffer buffer;
+
+	/** Where the next game starts */
+	private int gamePos;
+
+	/** The number of rows of the current game */
+	private int rows;
+
+	/** The number of columns of the current game */
+	private int cols;
+
+	/** The number of moves in the current game */
+	private int moveCount;
+
+	/** Whether the current game uses the byte encoding */
+	private boolean small;
+
+	/** Where the colors of the current game start, or -1 if not kept */
+	private int colorPos;
+
+	/** Where the next move starts */
+	private int movePos;
+
+	/** The index of the current move, -1 before the first */
+	private int moveIndex;
+
+	/** The x-coordinate of the current move */
+	private int xCoor;
+
+	/** The y-coordinate of the current move */
+	private int yCoor;
+
+	/** The number of bytes a varint took, as read by the last readVarint */
+	private int varintLength;
+
+	/** The most bytes an int can take as a varint */
+	private static final int MAX_VARINT_LENGTH = 5;
+
+	/**
+	 * Maps a file for reading
+	 * 
+	 * @param file the file to read
+	 * @throws IOException if the file could not be mapped, is larger than
+	 *             2GB, or is not in the move format
+	 */
+	public MoveReader(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("File too large to map: " + file);
+			}
+			// The mapping stays valid after the channel is closed
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size());
+		} finally {
+			raf.close();
+		}
+
+		int headerLength = MoveWriter.MAGIC.length + 1;
+		if (buffer.limit() < headerLength) {
+			throw new IOException("Not a move file: " + file);
+		}
+		for (int i = 0; i < MoveWriter.MAGIC.length; i++) {
+			if (buffer.get(i) != MoveWriter.MAGIC[i]) {
+				throw new IOException("Not a move file: " + file);
+			}
+		}
+		if (buffer.get(MoveWriter.MAGIC.length) != MoveWriter.VERSION) {
+			throw new IOException("Unknown move file version: "
+					+ buffer.get(MoveWriter.MAGIC.length));
+		}
+		gamePos = headerLength;
+		moveCount = 0;
+		moveIndex = -1;
+	}
+
+	/**
+	 * Moves on to the next game in the file
+	 * 
+	 * @return whether there was another game
+	 * @throws IOException if the game is cut short or its header is corrupt
+	 */
+	public boolean nextGame() throws IOException {
+		if (gamePos >= buffer.limit()) {
+			return false;
+		}
+
+		int limit = buffer.limit();
+		int pos = gamePos;
+		rows = readVarint(pos, limit);
+		pos += varintLength;
+		cols = readVarint(pos, limit);
+		pos += varintLength;
+		moveCount = readVarint(pos, limit);
+		pos += varintLength;
+		int flags = readVarint(pos, limit);
+		pos += varintLength;
+		int length = readVarint(pos, limit);
+		pos += varintLength;
+		if (rows < 1 || cols < 1 || moveCount < 0 || length < 0) {
+			throw new IOException("Corrupt game header at byte " + gamePos);
+		}
+
+		small = (long) rows * cols <= MoveWriter.SMALL_POINTS;
+		colorPos = -1;
+		long end = pos;
+		if ((flags & MoveWriter.FLAG_COLORS) != 0) {
+			colorPos = pos;
+			end += (moveCount + 7L) >>> 3;
+		}
+		end += length;
+		if (end > limit) {
+			throw new IOException("Truncated move file");
+		}
+		movePos = (int) (end - length);
+		moveIndex = -1;
+		gamePos = (int) end;
+		return true;
+	}
+
+	/**
+	 * Moves on to the next move of the current game
+	 * 
+	 * @return whether there was another move
+	 * @throws IOException if the move runs past the end of the game, or is
+	 *             off the board
+	 */
+	public boolean nextMove() throws IOException {
+		if (moveIndex + 1 >= moveCount) {
+			return false;
+		}
+		moveIndex++;
+
+		// The moves end where the next game starts
+		int p;
+		if (small) {
+			int b = readByte(movePos++);
+			if (b == MoveWriter.SMALL_PASS) {
+				p = -1;
+			} else if (b == MoveWriter.SMALL_ESCAPE) {
+				p = MoveWriter.SMALL_ESCAPE + readByte(movePos++);
+			} else {
+				p = b;
+			}
+		} else {
+			p = readVarint(movePos, gamePos) - 1;
+			movePos += varintLength;
+		}
+
+		if (p < -1 || p >= (long) rows * cols) {
+			throw new IOException("Move off the board: " + p);
+		}
+		if (p < 0) {
+			xCoor = Game.PASS;
+			yCoor = Game.PASS;
+		} else {
+			xCoor = p / cols;
+			yCoor = p % cols;
+		}
+		return true;
+	}
+
+	/**
+	 * Reads what is left of the current game into a record book
+	 * 
+	 * @return the moves not yet read
+	 * @throws IOException if a move runs past the end of the game, or is off
+	 *             the board
+	 */
+	public RecordBook readRecordBook() throws IOException {
+		RecordBook book = new RecordBook();
+		while (nextMove()) {
+			book.addRecord(xCoor, yCoor, getColor());
+		}
+		return book;
+	}
+
+	/**
+	 * Gets the number of rows on the board of the current game
+	 * 
+	 * @return the number of rows
+	 */
+	public int getRowNum() {
+		return rows;
+	}
+
+	/**
+	 * Gets the number of columns on the board of the current game
+	 * 
+	 * @return the number of columns
+	 */
+	public int getColNum() {
+		return cols;
+	}
+
+	/**
+	 * Gets the number of moves in the current game
+	 * 
+	 * @return the number of moves
+	 */
+	public int getMoveCount() {
+		return moveCount;
+	}
+
+	/**
+	 * Gets the x-coordinate of the current move
+	 * 
+	 * @return the x-coordinate, or Game.PASS
+	 */
+	public int getXCoor() {
+		return xCoor;
+	}
+
+	/**
+	 * Gets the y-coordinate of the current move
+	 * 
+	 * @return the y-coordinate, or Game.PASS
+	 */
+	public int getYCoor() {
+		return yCoor;
+	}
+
+	/**
+	 * Whether the current move was a pass
+	 * 
+	 * @return whether the move was a pass
+	 */
+	public boolean wasPass() {
+		return xCoor == Game.PASS;
+	}
+
+	/**
+	 * Gets the color of the stone played in the current move
+	 * 
+	 * @return the color of the stone
+	 */
+	public int getColor() {
+		if (colorPos < 0) {
+			return moveIndex % 2 + 1;
+		}
+		int bits = buffer.get(colorPos + (moveIndex >>> 3));
+		return (bits & (1 << (moveIndex & 7))) != 0 ? GoBoard.WHITE
+				: GoBoard.BLACK;
+	}
+
+	/**
+	 * Reads a byte of the current game's moves
+	 * 
+	 * @param pos where the byte is
+	 * @return the byte, from 0 to 255
+	 * @throws IOException if the byte is past the end of the game
+	 */
+	private int readByte(int pos) throws IOException {
+		if (pos >= gamePos) {
+			throw new IOException("Truncated move file");
+		}
+		return buffer.get(pos) & 0xFF;
+	}
+
+	/**
+	 * Reads a varint, leaving its length in varintLength
+	 * 
+	 * @param pos where the varint starts
+	 * @param limit where the bytes it may take end
+	 * @return the value
+	 * @throws IOException if the varint runs past the limit or is longer than
+	 *             an int can be
+	 */
+	private int readVarint(int pos, int limit) throws IOException {
+		int value = 0;
+		int shift = 0;
+		int start = pos;
+		int b;
+		do {
+			if (pos >= limit) {
+				throw new IOException("Truncated move file");
+			}
+			if (pos - start == MAX_VARINT_LENGTH) {
+				throw new IOException("Bad number in move file at byte "
+						+ start);
+			}
+			b = buffer.get(pos++);
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		varintLength = pos - start;
+		return value;
+	}
+}
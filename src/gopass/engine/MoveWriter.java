@@ -0,0 +1,209 @@
+package gopass.engine;
+
+import gopass.GoBoard;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes games out in GoPass's compact binary move format
+ * 
+ * A file starts with the bytes "GPMV" and a version byte, followed by the
+ * games one after another. Each game is:
+ * 
+ * rows, columns, number of moves, flags and the length in bytes of the
+ * moves, all as varints; then the colors, one bit per move, if the flags say
+ * they are kept; then the moves.
+ * 
+ * A move is the intersection's index (x * columns + y). On boards with up to
+ * 510 intersections, indexes below 254 take one byte, the rest take a 254
+ * byte and one more, and 255 is a pass, so every move on a board up to 15x15
+ * is a single byte. On larger boards a move is a varint of the index plus
+ * one, with 0 for a pass. Colors are only kept when the game does not simply
+ * alternate starting with black.
+ * 
+ * @author Jason Mey
+ * @version 1.0
+ */
+public class MoveWriter {
+
+	/** The bytes every file starts with */
+	static final byte[] MAGIC = { 'G', 'P', 'M', 'V' };
+
+	/** The version of the format */
+	static final int VERSION = 1;
+
+	/** The most intersections a board can have to use the byte encoding */
+	static final int SMALL_POINTS = 510;
+
+	/** The byte that says one more byte of the index follows */
+	static final int SMALL_ESCAPE = 254;
+
+	/** The byte that stands for a pass in the byte encoding */
+	static final int SMALL_PASS = 255;
+
+	/** The flag saying the colors of the moves are kept */
+	static final int FLAG_COLORS = 1;
+
+	/** Where the games are written */
+	private final OutputStream out;
+
+	/**
+	 * Creates a writer for games going to the given stream, and writes the
+	 * start of the file
+	 * 
+	 * @param out where to write the games
+	 * @throws IOException if the file could not be written
+	 */
+	public MoveWriter(OutputStream out) throws IOException {
+		if (out instanceof BufferedOutputStream) {
+			this.out = out;
+		} else {
+			this.out = new BufferedOutputStream(out);
+		}
+		this.out.write(MAGIC);
+		this.out.write(VERSION);
+	}
+
+	/**
+	 * Adds a game to the file
+	 * 
+	 * @param game the game to write
+	 * @throws IOException if the file could not be written
+	 */
+	public void write(Game game) throws IOException {
+		GoBoard board = game.getBoard();
+		write(game.getRecordBook(), board.getRowNum(), board.getColNum());
+	}
+
+	/**
+	 * Adds the moves in a record book to the file as a game
+	 * 
+	 * @param book the moves of the game
+	 * @param rows the number of rows on the board
+	 * @param cols the number of columns on the board
+	 * @throws IOException if the file could not be written
+	 */
+	public void write(RecordBook book, int rows, int cols) throws IOException {
+		int size = book.getSize();
+		boolean small = (long) rows * cols <= SMALL_POINTS;
+
+		// Work out the length first, so readers can skip past the game
+		int flags = 0;
+		int length = 0;
+		for (int i = 0; i < size; i++) {
+			if (book.getColor(i) != i % 2 + 1) {
+				flags |= FLAG_COLORS;
+			}
+			length += moveLength(book, i, cols, small);
+		}
+
+		writeVarint(rows);
+		writeVarint(cols);
+		writeVarint(size);
+		writeVarint(flags);
+		writeVarint(length);
+
+		if ((flags & FLAG_COLORS) != 0) {
+			int bits = 0;
+			for (int i = 0; i < size; i++) {
+				if (book.getColor(i) == GoBoard.WHITE) {
+					bits |= 1 << (i & 7);
+				}
+				if ((i & 7) == 7 || i == size - 1) {
+					out.write(bits);
+					bits = 0;
+				}
+			}
+		}
+
+		for (int i = 0; i < size; i++) {
+			if (small) {
+				if (book.wasPass(i)) {
+					out.write(SMALL_PASS);
+					continue;
+				}
+				int p = book.getXCoor(i) * cols + book.getYCoor(i);
+				if (p < SMALL_ESCAPE) {
+					out.write(p);
+				} else {
+					out.write(SMALL_ESCAPE);
+					out.write(p - SMALL_ESCAPE);
+				}
+			} else if (book.wasPass(i)) {
+				writeVarint(0);
+			} else {
+				writeVarint(book.getXCoor(i) * cols + book.getYCoor(i) + 1);
+			}
+		}
+	}
+
+	/**
+	 * Writes out anything still waiting in the buffer
+	 * 
+	 * @throws IOException if the file could not be written
+	 */
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	/**
+	 * Writes out anything still waiting and closes the stream underneath
+	 * 
+	 * @throws IOException if the file could not be written
+	 */
+	public void close() throws IOException {
+		out.close();
+	}
+
+	/**
+	 * Gets the number of bytes a move takes
+	 * 
+	 * @param book the moves of the game
+	 * @param i which move
+	 * @param cols the number of columns on the board
+	 * @param small whether the byte encoding is used
+	 * @return the number of bytes
+	 */
+	private static int moveLength(RecordBook book, int i, int cols,
+			boolean small) {
+		if (book.wasPass(i)) {
+			return 1;
+		}
+		int p = book.getXCoor(i) * cols + book.getYCoor(i);
+		if (small) {
+			return p < SMALL_ESCAPE ? 1 : 2;
+		}
+		return varintLength(p + 1);
+	}
+
+	/**
+	 * Gets the number of bytes a varint takes
+	 * 
+	 * @param value the value, which may not be negative
+	 * @return the number of bytes
+	 */
+	private static int varintLength(int value) {
+		int length = 1;
+		while ((value >>>= 7) != 0) {
+			length++;
+		}
+		return length;
+	}
+
+	/**
+	 * Writes a value seven bits at a time, lowest first, with the top bit of
+	 * each byte set if more follow
+	 * 
+	 * @param value the value, which may not be negative
+	 * @throws IOException if the file could not be written
+	 */
+	private void writeVarint(int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+}
@@ -0,0 +1,338 @@
+package gopass.engine;
+
+import java.util.Arrays;
+
+/**
+ * Builds passwords from the moves of a game, remembering the work done for
+ * the moves it has already seen
+ * 
+ * Each move's characters come from a board encoded with a seed that depends
+ * on the characters of the move before, so a password has to be built in
+ * order. The builder keeps the seed used for every move and the password
+ * built so far. When it is asked again for the same game with one more move,
+ * only that move is encoded; when moves were taken back or changed, it
+ * starts again from the last move both games share. Asking with a different
+ * scheme, seed, number of characters per move or alphabet starts over, but
+ * the boards encoded for the original scheme are kept in a cache (see
+ * EncodeBoardCache), so going back to settings used a moment ago does not
+ * encode them again.
+ * 
+ * A builder is not safe to share between threads; PasswordDeriver gives
+ * each derivation its own.
+ * 
+ * @author Jason Mey
+ * @version 1.0
+ */
+public class PasswordBuilder {
+
+	/** The encoding scheme the cached password used */
+	private int scheme;
+
+	/** The seed the cached password was built from */
+	private long seed;
+
+	/** The number of characters per move the cached password used */
+	private int charsPerMove;
+
+	/** The characters the cached password was made of */
+	private Alphabet alphabet;
+
+	/** The number of moves the cached password was built from */
+	private int moveNum;
+
+	/** The moves the cached password was built from, as x, y pairs */
+	private int[] moves;
+
+	/**
+	 * The seed used to encode the board for each move, or in the second
+	 * scheme the chain value for each move
+	 */
+	private long[] seeds;
+
+	/** The length of the password before each move */
+	private int[] lengths;
+
+	/** The password built so far */
+	private StringBuilder password;
+
+	/** The most boards the cache keeps, enough for a few long games */
+	private static final int CACHED_BOARDS = 256;
+
+	/** How long the cache keeps a board that is not used, in milliseconds */
+	public static final long CACHED_MILLIS = 5 * 60 * 1000;
+
+	/** The boards encoded for the original scheme */
+	private EncodeBoardCache boards;
+
+	/** Holds the characters of one move */
+	private char[] cell;
+
+	/** The moves of the last record book asked about, as x, y pairs */
+	private int[] decoded;
+
+	/**
+	 * Creates a builder with nothing cached
+	 */
+	public PasswordBuilder() {
+		moves = new int[32];
+		seeds = new long[17];
+		lengths = new int[17];
+		password = new StringBuilder();
+		boards = new EncodeBoardCache(CACHED_BOARDS, CACHED_MILLIS);
+		moveNum = -1;
+	}
+
+	/**
+	 * Gets the password for the moves in a record book, using the original
+	 * encoding scheme. Passes add nothing to the password.
+	 * 
+	 * @param seed the seed for the first move
+	 * @param charsPerMove the number of characters for each move
+	 * @param useSymbols which symbols may be used (see EncodeBoard)
+	 * @param book the moves of the game
+	 * @return the password
+	 */
+	public String getPassword(long seed, int charsPerMove, int useSymbols,
+			RecordBook book) {
+		return getPassword(EncodeBoard.SCHEME_V1, seed, charsPerMove,
+				useSymbols, book);
+	}
+
+	/**
+	 * Gets the password for the moves in a record book. Passes add nothing to
+	 * the password.
+	 * 
+	 * @param scheme the encoding scheme (see EncodeBoard)
+	 * @param seed the seed for the first move
+	 * @param charsPerMove the number of characters for each move
+	 * @param useSymbols which symbols may be used (see EncodeBoard)
+	 * @param book the moves of the game
+	 * @return the password
+	 */
+	public String getPassword(int scheme, long seed, int charsPerMove,
+			int useSymbols, RecordBook book) {
+		return getPassword(scheme, seed, charsPerMove,
+				Alphabet.forSymbols(useSymbols), book);
+	}
+
+	/**
+	 * Gets the password for the moves in a record book, derived with the
+	 * given options. Passes add nothing to the password.
+	 * 
+	 * @param seed the seed for the first move
+	 * @param options the settings to derive with
+	 * @param book the moves of the game
+	 * @return the password
+	 */
+	public String getPassword(long seed, DerivationOptions options,
+			RecordBook book) {
+		return getPassword(options.getScheme(), seed,
+				options.getCharsPerMove(), options.getAlphabet(), book);
+	}
+
+	/**
+	 * Gets the password for the moves in a record book, made of the
+	 * characters of any alphabet. Passes add nothing to the password.
+	 * 
+	 * @param scheme the encoding scheme (see EncodeBoard)
+	 * @param seed the seed for the first move
+	 * @param charsPerMove the number of characters for each move
+	 * @param alphabet the characters the password is made of
+	 * @param book the moves of the game
+	 * @return the password
+	 */
+	public String getPassword(int scheme, long seed, int charsPerMove,
+			Alphabet alphabet, RecordBook book) {
+		decoded = decode(book, decoded);
+		return getPassword(scheme, seed, charsPerMove, alphabet, decoded,
+				book.getSize());
+	}
+
+	/**
+	 * Gets the password for moves that have already been read out of a
+	 * record book (see decode), so that many passwords can be made from one
+	 * reading. Passes add nothing to the password.
+	 * 
+	 * @param scheme the encoding scheme (see EncodeBoard)
+	 * @param seed the seed for the first move
+	 * @param charsPerMove the number of characters for each move
+	 * @param alphabet the characters the password is made of
+	 * @param moveXY the moves, as x, y pairs; it is only read
+	 * @param size the number of moves
+	 * @return the password
+	 */
+	public String getPassword(int scheme, long seed, int charsPerMove,
+			Alphabet alphabet, int[] moveXY, int size) {
+		boolean timed = Stats.enabled();
+		long start = timed ? System.nanoTime() : 0;
+		DeriveEvent event = new DeriveEvent();
+		event.begin();
+		String built = build(scheme, seed, charsPerMove, alphabet, moveXY,
+				size);
+		if (timed) {
+			Stats.DERIVE.record(System.nanoTime() - start);
+		}
+		if (event.shouldCommit()) {
+			event.scheme = scheme;
+			event.charsPerMove = charsPerMove;
+			event.alphabetSize = alphabet.size();
+			event.moves = size;
+			event.commit();
+		}
+		return built;
+	}
+
+	/**
+	 * Builds the password for moves, reusing what was built for the last
+	 * game as far as the two games share their moves
+	 * 
+	 * @param scheme EncodeBoard.SCHEME_V1 or EncodeBoard.SCHEME_V2
+	 * @param seed the seed for the random number generator
+	 * @param charsPerMove the number of characters for each move
+	 * @param alphabet the characters the password is made of
+	 * @param moveXY the moves, as x, y pairs; it is only read
+	 * @param size the number of moves
+	 * @return the password
+	 */
+	private String build(int scheme, long seed, int charsPerMove,
+			Alphabet alphabet, int[] moveXY, int size) {
+		if (moveNum < 0 || scheme != this.scheme || seed != this.seed
+				|| charsPerMove != this.charsPerMove
+				|| !alphabet.equals(this.alphabet)) {
+			this.scheme = scheme;
+			this.seed = seed;
+			this.charsPerMove = charsPerMove;
+			this.alphabet = alphabet;
+			moveNum = 0;
+			seeds[0] = scheme == EncodeBoard.SCHEME_V2 ? 0 : seed;
+			lengths[0] = 0;
+			password.setLength(0);
+			cell = new char[charsPerMove];
+		}
+
+		// Keep the moves both games share, and forget the rest
+		int same = 0;
+		while (same < moveNum && same < size
+				&& moves[same * 2] == moveXY[same * 2]
+				&& moves[same * 2 + 1] == moveXY[same * 2 + 1]) {
+			same++;
+		}
+		if (same < moveNum) {
+			moveNum = same;
+			password.setLength(lengths[same]);
+		}
+
+		for (int i = moveNum; i < size; i++) {
+			add(moveXY[i * 2], moveXY[i * 2 + 1]);
+		}
+		return password.toString();
+	}
+
+	/**
+	 * Reads the moves out of a record book as x, y pairs, with Game.PASS for
+	 * both coordinates of a pass
+	 * 
+	 * @param book the moves of the game
+	 * @param into an array to reuse if it is big enough, or null
+	 * @return the moves
+	 */
+	public static int[] decode(RecordBook book, int[] into) {
+		int size = book.getSize();
+		if (into == null || into.length < size * 2) {
+			into = new int[Math.max(size * 2, 32)];
+		}
+		for (int i = 0; i < size; i++) {
+			into[i * 2] = book.getXCoor(i);
+			into[i * 2 + 1] = book.getYCoor(i);
+		}
+		return into;
+	}
+
+	/**
+	 * Forgets everything cached, overwriting the password built so far and
+	 * the encoded boards
+	 */
+	public void clear() {
+		moveNum = -1;
+		for (int i = 0; i < password.length(); i++) {
+			password.setCharAt(i, '\0');
+		}
+		password.setLength(0);
+		if (cell != null) {
+			Arrays.fill(cell, '\0');
+		}
+		boards.clear();
+	}
+
+	/**
+	 * Converts a character array to a long based on its ASCII values. This
+	 * method also increases the size of the number based on character
+	 * position.
+	 * 
+	 * This allows for greater variations in seeds. For example, it means that
+	 * the seeds generated from "top" and "pot" come out to different values.
+	 * 
+	 * @param str array to convert
+	 * @return the converted long
+	 */
+	public static long explodeStringToLong(char[] str) {
+		// Start the value equal to the total length of the string
+		long value = str.length;
+
+		// For every character, add the ASCII value to the value
+		// First, multiply the character by its position to increase variation
+		for (int i = 0; i < str.length; i++) {
+			int character = str[i];
+			long explodedChar = character * (i + 1);
+			value = value + explodedChar;
+		}
+
+		return value;
+	}
+
+	/**
+	 * Adds the characters for one more move to the password
+	 * 
+	 * @param x the x-coordinate of the move
+	 * @param y the y-coordinate of the move
+	 */
+	private void add(int x, int y) {
+		if (moveNum * 2 + 2 > moves.length) {
+			moves = Game.grow(moves);
+		}
+		if (moveNum + 2 > seeds.length) {
+			long[] biggerSeeds = new long[seeds.length * 2];
+			System.arraycopy(seeds, 0, biggerSeeds, 0, seeds.length);
+			seeds = biggerSeeds;
+			lengths = Game.grow(lengths);
+		}
+
+		// A pass leaves the password and the seed as they were
+		moves[moveNum * 2] = x;
+		moves[moveNum * 2 + 1] = y;
+		if (x == Game.PASS) {
+			seeds[moveNum + 1] = seeds[moveNum];
+			lengths[moveNum + 1] = lengths[moveNum];
+			moveNum++;
+			return;
+		}
+
+		if (scheme == EncodeBoard.SCHEME_V2) {
+			// Only the cell played is encoded
+			EncodeBoard.encodeCell(seed, seeds[moveNum], x, y, charsPerMove,
+					alphabet, cell, 0);
+			seeds[moveNum + 1] = EncodeBoard.nextChain(seeds[moveNum], cell,
+					0, charsPerMove);
+		} else {
+			boards.get(seeds[moveNum], charsPerMove, alphabet).getCell(x, y,
+					cell, 0);
+
+			// Now update the encoded board based on the value of the previous
+			// move to increase the randomness of the subsequent characters
+			seeds[moveNum + 1] = seed + explodeStringToLong(cell);
+		}
+		password.append(cell);
+		lengths[moveNum + 1] = password.length();
+		moveNum++;
+	}
+}
@@ -0,0 +1,346 @@
+package gopass.engine;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Derives passwords from a seed and the moves of a game, without any user
+ * interface
+ * 
+ * Every derivation works on its own state, so the methods here can be called
+ * from any number of threads at once. The record books given must not be
+ * changed while they are being read. Nothing here touches AWT or Swing, so
+ * it can be used from services running headless. The boards and password
+ * each derivation builds are wiped before it returns.
+ * 
+ * @author Jason Mey
+ * @version 1.0
+ */
+public final class PasswordDeriver {
+
+	/**
+	 * The derivations are static, so no deriver is ever made
+	 */
+	private PasswordDeriver() {
+	}
+
+	/**
+	 * Derives a password
+	 * 
+	 * @param seedChars the characters of the seed, which are not kept
+	 * @param moves the moves of the game
+	 * @param options the settings to derive with
+	 * @return the password
+	 */
+	public static String derive(char[] seedChars, RecordBook moves,
+			DerivationOptions options) {
+		return derive(seedOf(seedChars), moves, options);
+	}
+
+	/**
+	 * Derives a password from a seed that has already been worked out
+	 * 
+	 * @param seed the seed (see seedOf)
+	 * @param moves the moves of the game
+	 * @param options the settings to derive with
+	 * @return the password
+	 */
+	public static String derive(long seed, RecordBook moves,
+			DerivationOptions options) {
+		PasswordBuilder builder = new PasswordBuilder();
+		try {
+			return builder.getPassword(seed, options, moves);
+		} finally {
+			builder.clear();
+		}
+	}
+
+	/**
+	 * Works out the seed for the characters of a seed code
+	 * 
+	 * @param seedChars the characters of the seed
+	 * @return the seed
+	 */
+	public static long seedOf(char[] seedChars) {
+		return PasswordBuilder.explodeStringToLong(seedChars);
+	}
+
+	/**
+	 * Works out the seed for the characters of a seed code with the given
+	 * seed function
+	 * 
+	 * @param seedChars the characters of the seed
+	 * @param kdf the seed function
+	 * @return the seed
+	 */
+	public static long seedOf(char[] seedChars, SeedKdf kdf) {
+		return kdf.derive(seedChars);
+	}
+
+	/**
+	 * Derives many passwords in parallel in the common fork/join pool
+	 * 
+	 * @param seedChars the seed characters for each password
+	 * @param moves the moves for each password
+	 * @param options the settings to derive every password with
+	 * @return the passwords, in the same order
+	 * @throws IllegalArgumentException if there are not as many seeds as
+	 *             games
+	 */
+	public static String[] deriveAll(List<char[]> seedChars,
+			List<RecordBook> moves, DerivationOptions options) {
+		return deriveAll(seedChars, moves, options, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Derives many passwords in parallel
+	 * 
+	 * @param seedChars the seed characters for each password
+	 * @param moves the moves for each password
+	 * @param options the settings to derive every password with
+	 * @param pool the pool to derive in
+	 * @return the passwords, in the same order
+	 * @throws IllegalArgumentException if there are not as many seeds as
+	 *             games
+	 */
+	public static String[] deriveAll(List<char[]> seedChars,
+			List<RecordBook> moves, DerivationOptions options,
+			ForkJoinPool pool) {
+		if (seedChars.size() != moves.size()) {
+			throw new IllegalArgumentException(seedChars.size()
+					+ " seeds for " + moves.size() + " games");
+		}
+		String[] passwords = new String[moves.size()];
+		if (!moves.isEmpty()) {
+			pool.invoke(new DeriveTask(seedChars, moves, options, passwords,
+					0, moves.size()));
+		}
+		return passwords;
+	}
+
+	/**
+	 * Derives the password for each of many sites from one game, in the
+	 * common fork/join pool. A site's seed is the base seed followed by the
+	 * site's label, just as if the two had been typed in together.
+	 * 
+	 * @param baseSeed the characters of the seed every site shares, which
+	 *            are not kept
+	 * @param labels the label of each site
+	 * @param moves the moves of the game
+	 * @param options the settings to derive every password with
+	 * @param kdf the seed function
+	 * @return the password for each site, in the same order
+	 */
+	public static String[] deriveForSites(char[] baseSeed,
+			List<String> labels, RecordBook moves, DerivationOptions options,
+			SeedKdf kdf) {
+		return deriveForSites(baseSeed, labels, moves, options, kdf,
+				ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Derives the password for each of many sites from one game
+	 * 
+	 * The moves are read out of the record book once, and every site's
+	 * chain is then run over that one copy, with the sites split between the
+	 * threads of the pool. Each site's seed is worked out on the thread that
+	 * runs its chain, so a costly seed function is spread out too.
+	 * 
+	 * @param baseSeed the characters of the seed every site shares, which
+	 *            are not kept
+	 * @param labels the label of each site
+	 * @param moves the moves of the game
+	 * @param options the settings to derive every password with
+	 * @param kdf the seed function
+	 * @param pool the pool to derive in
+	 * @return the password for each site, in the same order
+	 */
+	public static String[] deriveForSites(char[] baseSeed,
+			List<String> labels, RecordBook moves, DerivationOptions options,
+			SeedKdf kdf, ForkJoinPool pool) {
+		int[] moveXY = PasswordBuilder.decode(moves, null);
+		String[] passwords = new String[labels.size()];
+		if (!labels.isEmpty()) {
+			pool.invoke(new SiteTask(baseSeed, labels, moveXY,
+					moves.getSize(), options, kdf, passwords, 0,
+					labels.size()));
+		}
+		return passwords;
+	}
+
+	/**
+	 * Derives a range of the passwords, splitting it in half until it is
+	 * small enough to do on one thread
+	 */
+	@SuppressWarnings("serial")
+	private static class DeriveTask extends RecursiveAction {
+
+		/** The number of passwords small enough to derive on one thread */
+		private static final int THRESHOLD = 16;
+
+		/** The seed characters for each password */
+		private final List<char[]> seedChars;
+
+		/** The moves for each password */
+		private final List<RecordBook> moves;
+
+		/** The settings to derive with */
+		private final DerivationOptions options;
+
+		/** Where to put the passwords */
+		private final String[] passwords;
+
+		/** The first index of the range */
+		private final int from;
+
+		/** The index after the last one in the range */
+		private final int to;
+
+		/**
+		 * Creates a task for a range of passwords
+		 * 
+		 * @param seedChars the seed characters for each password
+		 * @param moves the moves for each password
+		 * @param options the settings to derive with
+		 * @param passwords where to put the passwords
+		 * @param from the first index of the range
+		 * @param to the index after the last one in the range
+		 */
+		DeriveTask(List<char[]> seedChars, List<RecordBook> moves,
+				DerivationOptions options, String[] passwords, int from,
+				int to) {
+			this.seedChars = seedChars;
+			this.moves = moves;
+			this.options = options;
+			this.passwords = passwords;
+			this.from = from;
+			this.to = to;
+		}
+
+		/**
+		 * Derives the range, or splits it between two tasks
+		 */
+		protected void compute() {
+			if (to - from <= THRESHOLD) {
+				// One builder for the whole range saves remaking its tables
+				PasswordBuilder builder = new PasswordBuilder();
+				try {
+					for (int i = from; i < to; i++) {
+						passwords[i] = builder.getPassword(
+								seedOf(seedChars.get(i)), options,
+								moves.get(i));
+					}
+				} finally {
+					builder.clear();
+				}
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new DeriveTask(seedChars, moves, options, passwords,
+					from, mid), new DeriveTask(seedChars, moves, options,
+					passwords, mid, to));
+		}
+	}
+
+	/**
+	 * Derives the passwords of a range of sites, splitting it in half until
+	 * it is small enough to do on one thread
+	 */
+	@SuppressWarnings("serial")
+	private static class SiteTask extends RecursiveAction {
+
+		/**
+		 * The number of sites small enough to derive on one thread. Each
+		 * site is a whole chain, and perhaps a costly seed, so they are
+		 * shared out two at a time.
+		 */
+		private static final int THRESHOLD = 2;
+
+		/** The characters of the seed every site shares */
+		private final char[] baseSeed;
+
+		/** The label of each site */
+		private final List<String> labels;
+
+		/** The moves, as x, y pairs */
+		private final int[] moveXY;
+
+		/** The number of moves */
+		private final int size;
+
+		/** The settings to derive with */
+		private final DerivationOptions options;
+
+		/** The seed function */
+		private final SeedKdf kdf;
+
+		/** Where to put the passwords */
+		private final String[] passwords;
+
+		/** The first index of the range */
+		private final int from;
+
+		/** The index after the last one in the range */
+		private final int to;
+
+		/**
+		 * Creates a task for a range of sites
+		 * 
+		 * @param baseSeed the characters of the seed every site shares
+		 * @param labels the label of each site
+		 * @param moveXY the moves, as x, y pairs
+		 * @param size the number of moves
+		 * @param options the settings to derive with
+		 * @param kdf the seed function
+		 * @param passwords where to put the passwords
+		 * @param from the first index of the range
+		 * @param to the index after the last one in the range
+		 */
+		SiteTask(char[] baseSeed, List<String> labels, int[] moveXY,
+				int size, DerivationOptions options, SeedKdf kdf,
+				String[] passwords, int from, int to) {
+			this.baseSeed = baseSeed;
+			this.labels = labels;
+			this.moveXY = moveXY;
+			this.size = size;
+			this.options = options;
+			this.kdf = kdf;
+			this.passwords = passwords;
+			this.from = from;
+			this.to = to;
+		}
+
+		/**
+		 * Derives the range, or splits it between two tasks
+		 */
+		protected void compute() {
+			if (to - from <= THRESHOLD) {
+				PasswordBuilder builder = new PasswordBuilder();
+				try {
+					for (int i = from; i < to; i++) {
+						String label = labels.get(i);
+						char[] seedChars = Arrays.copyOf(baseSeed,
+								baseSeed.length + label.length());
+						label.getChars(0, label.length(), seedChars,
+								baseSeed.length);
+						long seed = kdf.derive(seedChars);
+						Arrays.fill(seedChars, '\0');
+						passwords[i] = builder.getPassword(
+								options.getScheme(), seed,
+								options.getCharsPerMove(),
+								options.getAlphabet(), moveXY, size);
+					}
+				} finally {
+					builder.clear();
+				}
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new SiteTask(baseSeed, labels, moveXY, size, options,
+					kdf, passwords, from, mid), new SiteTask(baseSeed,
+					labels, moveXY, size, options, kdf, passwords, mid, to));
+		}
+	}
+}
@@ -0,0 +1,36 @@
+package gopass.engine;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for a stone played with Game.play
+ * 
+ * The moves of a game are as secret as its seed, so the event says how much
+ * work the move was, never where it was played.
+ * 
+ * @author Jason Mey
+ * @version 1.0
+ */
+@Name("gopass.Play")
+@Label("Play Stone")
+@Category({ "GoPass", "Engine" })
+@Description("A stone played, and the stones it took off the board")
+class PlayEvent extends jdk.jfr.Event {
+
+	/** The number of enemy stones captured */
+	@Label("Captured")
+	int captured;
+
+	/** Whether the move took its own group off the board */
+	@Label("Suicide")
+	boolean suicide;
+
+	/** The number of stones in the group the stone joined */
+	@Label("Group Size")
+	@Description("Stones in the group the stone joined, the stones walked "
+			+ "when groups are merged or taken off the board")
+	int groupSize;
+}
@@ -0,0 +1,110 @@
+package gopass.engine;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of values keyed by position hash
+ * 
+ * Positions are looked up by their Zobrist hash (see BitBoard.getHash), so
+ * finding a position that has been seen before costs O(1) rather than a
+ * comparison of the whole board. Once the cache is full, the position used
+ * least recently is dropped.
+ * 
+ * @author Jason Mey
+ * @version 1.0
+ * 
+ * @param <V> the type of value kept for each position
+ */
+public class PositionCache<V> {
+
+	/** The default number of positions to keep */
+	private static final int DEFAULT_CAPACITY = 4096;
+
+	/** The most positions the cache will hold */
+	private final int capacity;
+
+	/** The cached values, in order of use */
+	private final LinkedHashMap<Long, V> entries;
+
+	/**
+	 * Creates a cache holding up to the default number of positions
+	 */
+	public PositionCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a cache holding up to the given number of positions
+	 * 
+	 * @param capacity the most positions to keep
+	 */
+	@SuppressWarnings("serial")
+	public PositionCache(int capacity) {
+		if (capacity < 1) {
+			capacity = 1;
+		}
+		this.capacity = capacity;
+		entries = new LinkedHashMap<Long, V>(16, 0.75f, true) {
+			protected boolean removeEldestEntry(Map.Entry<Long, V> eldest) {
+				return size() > PositionCache.this.capacity;
+			}
+		};
+	}
+
+	/**
+	 * Gets the value kept for a position
+	 * 
+	 * @param hash the hash of the position
+	 * @return the value, or null if the position is not cached
+	 */
+	public V get(long hash) {
+		return entries.get(hash);
+	}
+
+	/**
+	 * Whether a position is cached
+	 * 
+	 * @param hash the hash of the position
+	 * @return whether the position is cached
+	 */
+	public boolean contains(long hash) {
+		return entries.containsKey(hash);
+	}
+
+	/**
+	 * Keeps a value for a position, dropping the least recently used position
+	 * if the cache is full
+	 * 
+	 * @param hash the hash of the position
+	 * @param value the value to keep
+	 */
+	public void put(long hash, V value) {
+		entries.put(hash, value);
+	}
+
+	/**
+	 * Gets the number of positions cached
+	 * 
+	 * @return the number of positions cached
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Gets the most positions the cache will hold
+	 * 
+	 * @return the capacity of the cache
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Empties the cache
+	 */
+	public void clear() {
+		entries.clear();
+	}
+}
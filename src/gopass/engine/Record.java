@@ -1,5 +1,7 @@
 package gopass.engine;
 
+import gopass.GoBoard;
+
 /**
  * A class for storing a single move's record
  * 
@@ -17,6 +19,15 @@ public class Record {
 	/** The color of the stone played */
 	private int color;
 
+	/** The stones the move took off the board, as x, y pairs */
+	private int[] removed;
+
+	/** The color of the stones the move took off the board */
+	private int removedColor;
+
+	/** A move that took no stones off the board */
+	private static final int[] NONE_REMOVED = new int[0];
+
 	/**
 	 * Creates a new record, given the information of a move
 	 * 
@@ -28,9 +39,30 @@ public class Record {
 	 *            the color of the stone played
 	 */
 	public Record(int x, int y, int color) {
+		this(x, y, color, NONE_REMOVED, GoBoard.EMPTY);
+	}
+
+	/**
+	 * Creates a new record, given the information of a move and the stones it
+	 * took off the board
+	 * 
+	 * @param x
+	 *            the row the move was played in
+	 * @param y
+	 *            the column the move was played in
+	 * @param color
+	 *            the color of the stone played
+	 * @param removed
+	 *            the stones taken off the board, as x, y pairs
+	 * @param removedColor
+	 *            the color of the stones taken off the board
+	 */
+	public Record(int x, int y, int color, int[] removed, int removedColor) {
 		xCoor = x;
 		yCoor = y;
 		this.color = color;
+		this.removed = removed;
+		this.removedColor = removedColor;
 	}
 
 	/**
@@ -73,6 +105,88 @@ public class Record {
 		return color;
 	}
 
+	/**
+	 * Gets the number of stones the move took off the board
+	 * 
+	 * @return the number of stones removed
+	 */
+	public int getRemovedCount() {
+		return removed.length / 2;
+	}
+
+	/**
+	 * Gets the x-coordinate of a stone the move took off the board
+	 * 
+	 * @param i
+	 *            which removed stone
+	 * @return the x-coordinate of the stone
+	 */
+	public int getRemovedX(int i) {
+		return removed[i * 2];
+	}
+
+	/**
+	 * Gets the y-coordinate of a stone the move took off the board
+	 * 
+	 * @param i
+	 *            which removed stone
+	 * @return the y-coordinate of the stone
+	 */
+	public int getRemovedY(int i) {
+		return removed[i * 2 + 1];
+	}
+
+	/**
+	 * Gets the color of the stones the move took off the board. This is the
+	 * color of the stone played if the move was a suicide.
+	 * 
+	 * @return the color of the removed stones
+	 */
+	public int getRemovedColor() {
+		return removedColor;
+	}
+
+	/**
+	 * Reads a move written the way toString writes it: PASS, a column letter
+	 * followed by a row number such as "c4", or a column number and a row
+	 * number such as "27 5"
+	 * 
+	 * @param text
+	 *            the move
+	 * @param color
+	 *            the color of the stone played
+	 * @return the record of the move
+	 * @throws IllegalArgumentException
+	 *             if the text is not a move
+	 */
+	public static Record parse(String text, int color) {
+		String move = text.trim();
+		if (move.equalsIgnoreCase("PASS")) {
+			return new Record(Game.PASS, Game.PASS, color);
+		}
+
+		try {
+			int space = move.indexOf(' ');
+			if (space > 0) {
+				int y = Integer.parseInt(move.substring(0, space)) - 1;
+				int x = Integer.parseInt(move.substring(space + 1).trim()) - 1;
+				if (x >= 0 && y >= 0) {
+					return new Record(x, y, color);
+				}
+			} else if (move.length() > 1 && move.charAt(0) >= 'a'
+					&& move.charAt(0) <= 'z') {
+				int y = move.charAt(0) - 'a';
+				int x = Integer.parseInt(move.substring(1)) - 1;
+				if (x >= 0) {
+					return new Record(x, y, color);
+				}
+			}
+		} catch (NumberFormatException e) {
+			// Fall through to the error below
+		}
+		throw new IllegalArgumentException("Not a move: " + text);
+	}
+
 	/**
 	 * String form of the record
 	 */
@@ -1,23 +1,60 @@
 package gopass.engine;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * A class for recording the plays in a game
  * 
+ * Each move is packed into a single int: the x-coordinate, the y-coordinate
+ * and the color of the stone. The stones a move took off the board are packed
+ * the same way into one shared array. A bitset of the intersections that have
+ * been played on answers beenPlayed without looking through the game, and
+ * Record objects are only made when one is asked for.
+ * 
  * @author Jason Mey
  * @version 1.0
  */
 public class RecordBook {
 
-   /** The list of all the records */
-   private ArrayList<Record> records;
+   /** The largest coordinate a record book can hold */
+   public static final int MAX_COORDINATE = 0x7FFE;
+
+   /** The number of bits used for the color in a packed move */
+   private static final int COLOR_BITS = 2;
+
+   /** The number of bits used for each coordinate in a packed move */
+   private static final int COORD_BITS = 15;
+
+   /** The coordinate that stands for a pass in a packed move */
+   private static final int PASS_COORD = (1 << COORD_BITS) - 1;
+
+   /** The packed moves */
+   private int[] moves;
+
+   /** The number of moves recorded */
+   private int size;
+
+   /** The packed stones taken off the board, for every move in order */
+   private int[] removed;
+
+   /** Where each move's removed stones end in the removed array */
+   private int[] removedEnd;
+
+   /** Which moves were the first to be played on their intersection */
+   private long[] firstPlays;
+
+   /** The intersections that have been played on, one bitset per row */
+   private long[][] played;
 
    /**
     * Creates a new record-keeping book
     */
    public RecordBook() {
-      records = new ArrayList<Record>(20);
+      moves = new int[20];
+      removed = new int[20];
+      removedEnd = new int[20];
+      firstPlays = new long[1];
+      played = new long[0][];
    }
 
    /**
@@ -28,7 +65,105 @@ public class RecordBook {
     * @param color the color of the stone played
     */
    public void addRecord(int x, int y, int color) {
-      records.add(new Record(x, y, color));
+      addRecord(x, y, color, null, 0);
+   }
+
+   /**
+    * Adds a record of a new move, along with the stones it took off the
+    * board, to the record book
+    * 
+    * @param x the x-coordinate of the move
+    * @param y the y-coordinate of the move
+    * @param color the color of the stone played
+    * @param removed the stones taken off the board, as x, y pairs
+    * @param removedColor the color of the stones taken off the board
+    */
+   public void addRecord(int x, int y, int color, int[] removed,
+      int removedColor) {
+      if (size == moves.length) {
+         moves = Game.grow(moves);
+         removedEnd = Game.grow(removedEnd);
+      }
+
+      int start = size == 0 ? 0 : removedEnd[size - 1];
+      int count = removed == null ? 0 : removed.length / 2;
+      while (this.removed.length < start + count) {
+         this.removed = Game.grow(this.removed);
+      }
+      for (int i = 0; i < count; i++) {
+         this.removed[start + i] = pack(removed[i * 2], removed[i * 2 + 1],
+            removedColor);
+      }
+
+      moves[size] = pack(x, y, color);
+      removedEnd[size] = start + count;
+      if ((size >>> 6) >= firstPlays.length) {
+         long[] bigger = new long[firstPlays.length * 2];
+         System.arraycopy(firstPlays, 0, bigger, 0, firstPlays.length);
+         firstPlays = bigger;
+      }
+      if (x != Game.PASS && !beenPlayed(x, y)) {
+         markPlayed(x, y, true);
+         firstPlays[size >>> 6] |= 1L << size;
+      }
+      size++;
+   }
+
+   /**
+    * Takes the record of the latest move out of the record book
+    * 
+    * @return the record taken out, or null if the book is empty
+    */
+   public Record removeLastRecord() {
+      if (size == 0) {
+         return null;
+      }
+      Record r = getRecord(size - 1);
+      size--;
+      long bit = 1L << size;
+      if ((firstPlays[size >>> 6] & bit) != 0) {
+         // No earlier move was played here, so the intersection is fresh again
+         firstPlays[size >>> 6] &= ~bit;
+         markPlayed(r.getXCoor(), r.getYCoor(), false);
+      }
+      return r;
+   }
+
+   /**
+    * Takes every record out of the record book
+    */
+   public void clear() {
+      for (int i = 0; i < played.length; i++) {
+         if (played[i] != null) {
+            Arrays.fill(played[i], 0L);
+         }
+      }
+      Arrays.fill(firstPlays, 0L);
+      size = 0;
+   }
+
+   /**
+    * Makes a record book with the same moves as this one, which does not
+    * change when this one does. The stones each move took off the board are
+    * left out.
+    * 
+    * @return the copy
+    */
+   public RecordBook copyMoves() {
+      RecordBook copy = new RecordBook();
+      for (int i = 0; i < size; i++) {
+         copy.addRecord(getXCoor(i), getYCoor(i), getColor(i));
+      }
+      return copy;
+   }
+
+   /**
+    * Gets the number of moves recorded
+    * 
+    * @return the number of moves recorded
+    */
+   public int getSize() {
+      return size;
    }
 
    /**
@@ -38,9 +173,69 @@ public class RecordBook {
     * @return the record of the specified turn
     */
    public Record getRecord(int turn) {
-      return records.get(turn);
+      if (turn < 0 || turn >= size) {
+         throw new IndexOutOfBoundsException("Turn: " + turn + ", Size: "
+            + size);
+      }
+
+      int start = turn == 0 ? 0 : removedEnd[turn - 1];
+      int count = removedEnd[turn] - start;
+      if (count == 0) {
+         return new Record(getXCoor(turn), getYCoor(turn), getColor(turn));
+      }
+      int[] pairs = new int[count * 2];
+      for (int i = 0; i < count; i++) {
+         pairs[i * 2] = unpackX(removed[start + i]);
+         pairs[i * 2 + 1] = unpackY(removed[start + i]);
+      }
+      return new Record(getXCoor(turn), getYCoor(turn), getColor(turn), pairs,
+         removed[start] & ((1 << COLOR_BITS) - 1));
+   }
+
+   /**
+    * Gets the x-coordinate of the move played on the specified turn, without
+    * making a record
+    * 
+    * @param turn the turn
+    * @return the x-coordinate of the move
+    */
+   public int getXCoor(int turn) {
+      return unpackX(moves[turn]);
+   }
+
+   /**
+    * Gets the y-coordinate of the move played on the specified turn, without
+    * making a record
+    * 
+    * @param turn the turn
+    * @return the y-coordinate of the move
+    */
+   public int getYCoor(int turn) {
+      return unpackY(moves[turn]);
    }
-   
+
+   /**
+    * Gets the color of the stone played on the specified turn, without making
+    * a record
+    * 
+    * @param turn the turn
+    * @return the color of the stone played
+    */
+   public int getColor(int turn) {
+      return moves[turn] & ((1 << COLOR_BITS) - 1);
+   }
+
+   /**
+    * Whether the move on the specified turn was a pass, without making a
+    * record
+    * 
+    * @param turn the turn
+    * @return whether the move was a pass
+    */
+   public boolean wasPass(int turn) {
+      return getXCoor(turn) == Game.PASS;
+   }
+
    /**
     * Checks to see if an intersection has been played on during the game
     * 
@@ -49,26 +244,95 @@ public class RecordBook {
     * @return whether or not the move was played
     */
    public boolean beenPlayed(int x, int y) {
-	   // Check through the game to see if that intersection has ever been played on
-	   for (int i = 0; i < records.size(); i++) {
-		   Record r = records.get(i);
-		   if (r.getXCoor() == x && r.getYCoor() == y) {
-			   return true;
-		   }
-	   }
-	   return false;
+      if (x < 0 || x >= played.length || played[x] == null || y < 0
+         || (y >>> 6) >= played[x].length) {
+         return false;
+      }
+      return (played[x][y >>> 6] & (1L << y)) != 0;
    }
 
    /**
     * Prints out the records in human-readable form
     */
    public void printRecords() {
-      for (int i = 0; i < records.size(); i += 2) {
-         if (i + 1 < records.size()) {
+      for (int i = 0; i < size; i += 2) {
+         if (i + 1 < size) {
             System.out.println(getRecord(i) + ", " + getRecord(i + 1));
          } else {
             System.out.println(getRecord(i) + ", ");
          }
       }
    }
-}
\ No newline at end of file
+
+   /**
+    * Sets or clears the bit for an intersection in the played bitset,
+    * growing the bitset if needed
+    * 
+    * @param x the x-coordinate
+    * @param y the y-coordinate
+    * @param on whether the intersection has been played on
+    */
+   private void markPlayed(int x, int y, boolean on) {
+      if (x >= played.length) {
+         long[][] bigger = new long[Math.max(x + 1, played.length * 2)][];
+         System.arraycopy(played, 0, bigger, 0, played.length);
+         played = bigger;
+      }
+      long[] row = played[x];
+      if (row == null || (y >>> 6) >= row.length) {
+         long[] bigger = new long[Math.max((y >>> 6) + 1,
+            row == null ? 1 : row.length * 2)];
+         if (row != null) {
+            System.arraycopy(row, 0, bigger, 0, row.length);
+         }
+         row = bigger;
+         played[x] = row;
+      }
+      if (on) {
+         row[y >>> 6] |= 1L << y;
+      } else {
+         row[y >>> 6] &= ~(1L << y);
+      }
+   }
+
+   /**
+    * Packs a move into a single int
+    * 
+    * @param x the x-coordinate, or Game.PASS
+    * @param y the y-coordinate, or Game.PASS
+    * @param color the color of the stone
+    * @return the packed move
+    */
+   private static int pack(int x, int y, int color) {
+      if (x == Game.PASS && y == Game.PASS) {
+         x = PASS_COORD;
+         y = PASS_COORD;
+      } else if (x < 0 || x > MAX_COORDINATE || y < 0 || y > MAX_COORDINATE) {
+         throw new IllegalArgumentException("Move out of range: " + x + ", "
+            + y);
+      }
+      return (((x << COORD_BITS) | y) << COLOR_BITS) | color;
+   }
+
+   /**
+    * Gets the x-coordinate out of a packed move
+    * 
+    * @param move the packed move
+    * @return the x-coordinate, or Game.PASS
+    */
+   private static int unpackX(int move) {
+      int x = move >>> (COORD_BITS + COLOR_BITS);
+      return x == PASS_COORD ? Game.PASS : x;
+   }
+
+   /**
+    * Gets the y-coordinate out of a packed move
+    * 
+    * @param move the packed move
+    * @return the y-coordinate, or Game.PASS
+    */
+   private static int unpackY(int move) {
+      int y = (move >>> COLOR_BITS) & PASS_COORD;
+      return y == PASS_COORD ? Game.PASS : y;
+   }
+}
@@ -0,0 +1,25 @@
+package gopass.engine;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for a group taken off the board, whether it
+ * was captured, took itself off by suicide, or was removed with
+ * Game.removeGroup
+ * 
+ * @author Jason Mey
+ * @version 1.0
+ */
+@Name("gopass.RemoveGroup")
+@Label("Remove Group")
+@Category({ "GoPass", "Engine" })
+@Description("A group taken off the board by a capture, a suicide or by hand")
+class RemoveGroupEvent extends jdk.jfr.Event {
+
+	/** The number of stones removed */
+	@Label("Removed")
+	int removed;
+}
@@ -0,0 +1,85 @@
+package gopass.engine;
+
+/**
+ * The outcome of replaying one recorded game: the final position, or the
+ * position before the first move that could not be played
+ * 
+ * @author Jason Mey
+ * @version 1.0
+ */
+public class ReplayResult {
+
+	/** The final position, without the positions before it */
+	private final BoardSnapshot position;
+
+	/** The index of the move the replay stopped at, or -1 */
+	private final int illegalMove;
+
+	/**
+	 * Creates the result of a replay
+	 * 
+	 * @param position the final position
+	 * @param illegalMove the index of the move that could not be played, or
+	 *            -1 if every move was legal
+	 */
+	ReplayResult(BoardSnapshot position, int illegalMove) {
+		this.position = position;
+		this.illegalMove = illegalMove;
+	}
+
+	/**
+	 * Gets the final position of the game, or the position before the move
+	 * that could not be played
+	 * 
+	 * @return the final position
+	 */
+	public BoardSnapshot getPosition() {
+		return position;
+	}
+
+	/**
+	 * Gets the number of stones black captured
+	 * 
+	 * @return the number of stones black captured
+	 */
+	public int getBlackCap() {
+		return position.getBlackCap();
+	}
+
+	/**
+	 * Gets the number of stones white captured
+	 * 
+	 * @return the number of stones white captured
+	 */
+	public int getWhiteCap() {
+		return position.getWhiteCap();
+	}
+
+	/**
+	 * Gets the number of turns that were played, passes included
+	 * 
+	 * @return the number of turns played
+	 */
+	public int getTurn() {
+		return position.getTurn();
+	}
+
+	/**
+	 * Gets the index in the record book of the move the replay stopped at,
+	 * because it was off the board, on a stone, or not by black or white
+	 * 
+	 * @return the index of the illegal move, or -1 if there was none
+	 */
+	public int getIllegalMove() {
+		return illegalMove;
+	}
+
+	/**
+	 * Whether every recorded move could be played
+	 * 
+	 * @return whether the record was legal throughout
+	 */
+	public boolean isLegal() {
+		return illegalMove < 0;
+	}
+}
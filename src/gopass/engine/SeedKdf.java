@@ -0,0 +1,372 @@
+package gopass.engine;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.spec.InvalidKeySpecException;
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Turns the characters of a seed code into the seed a password is built from
+ * 
+ * The original way (LEGACY) adds up the characters, each weighted by its
+ * place, so it is cheap to try every short seed and many seeds give the same
+ * number. It is kept so passwords made with it can be made again. The newer
+ * way stretches the seed with PBKDF2 (HMAC-SHA256, from the JDK), which makes
+ * every guess cost as much as the user is willing to wait.
+ * 
+ * The work is split into lanes. Each lane runs PBKDF2 on its own, with a salt
+ * naming the lane, and the lanes' outputs are hashed together into the seed.
+ * Lanes run in parallel in the fork/join pool, so on a machine with a core
+ * per lane a seed takes as long as one lane; an attacker still has to do all
+ * of them. The number of lanes and the iterations in each are part of the
+ * settings a password is made with, and are written out by toString (for
+ * example "pbkdf2:4:200000") so the same seed can be made again anywhere.
+ * calibrate picks the iterations that fit a time budget on this machine.
+ * 
+ * A SeedKdf never changes once made, so it can be shared between threads.
+ * 
+ * @author Jason Mey
+ * @version 1.0
+ */
+public final class SeedKdf {
+
+	/** The version of the original weighted sum */
+	public static final int VERSION_LEGACY = 0;
+
+	/** The version that stretches the seed with PBKDF2 */
+	public static final int VERSION_PBKDF2 = 1;
+
+	/** The original weighted sum of the seed's characters */
+	public static final SeedKdf LEGACY = new SeedKdf(VERSION_LEGACY, 0, 0);
+
+	/** The name of the legacy version, as written by toString */
+	private static final String LEGACY_NAME = "legacy";
+
+	/** The name of the PBKDF2 version, as written by toString */
+	private static final String PBKDF2_NAME = "pbkdf2";
+
+	/** The JDK's name for the algorithm */
+	private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+
+	/** The number of bits each lane puts out */
+	private static final int LANE_BITS = 256;
+
+	/** The start of every lane's salt */
+	private static final byte[] SALT = "GoPass seed".getBytes(
+			StandardCharsets.US_ASCII);
+
+	/** The fewest iterations a lane may have */
+	private static final int MIN_ITERATIONS = 1000;
+
+	/** The most lanes there may be */
+	private static final int MAX_LANES = 256;
+
+	/** How long calibration times a lane for, at least, in milliseconds */
+	private static final long CALIBRATION_MILLIS = 100;
+
+	/** How long calibration keeps timing for, at least, in milliseconds */
+	private static final long CALIBRATION_TOTAL = 1500;
+
+	/** The version */
+	private final int version;
+
+	/** The number of lanes */
+	private final int lanes;
+
+	/** The number of PBKDF2 iterations in each lane */
+	private final int iterations;
+
+	/**
+	 * Creates a seed function
+	 * 
+	 * @param version VERSION_LEGACY or VERSION_PBKDF2
+	 * @param lanes the number of lanes
+	 * @param iterations the iterations in each lane
+	 */
+	private SeedKdf(int version, int lanes, int iterations) {
+		this.version = version;
+		this.lanes = lanes;
+		this.iterations = iterations;
+	}
+
+	/**
+	 * Makes a PBKDF2 seed function
+	 * 
+	 * @param lanes the number of lanes
+	 * @param iterations the iterations in each lane
+	 * @return the seed function
+	 * @throws IllegalArgumentException if there are too few or too many
+	 *             lanes, or too few iterations
+	 */
+	public static SeedKdf pbkdf2(int lanes, int iterations) {
+		if (lanes < 1 || lanes > MAX_LANES) {
+			throw new IllegalArgumentException("Bad number of lanes: " + lanes);
+		}
+		if (iterations < MIN_ITERATIONS) {
+			throw new IllegalArgumentException("Too few iterations: "
+					+ iterations);
+		}
+		return new SeedKdf(VERSION_PBKDF2, lanes, iterations);
+	}
+
+	/**
+	 * Reads a seed function written by toString
+	 * 
+	 * @param text "legacy", or "pbkdf2:LANES:ITERATIONS"
+	 * @return the seed function
+	 * @throws IllegalArgumentException if the text is not a seed function
+	 */
+	public static SeedKdf parse(String text) {
+		if (text.equalsIgnoreCase(LEGACY_NAME)) {
+			return LEGACY;
+		}
+		String[] parts = text.split(":");
+		if (parts.length != 3 || !parts[0].equalsIgnoreCase(PBKDF2_NAME)) {
+			throw new IllegalArgumentException("Not a seed function: " + text);
+		}
+		try {
+			return pbkdf2(Integer.parseInt(parts[1]),
+					Integer.parseInt(parts[2]));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Not a seed function: " + text);
+		}
+	}
+
+	/**
+	 * Makes a PBKDF2 seed function with a lane for every core, taking about
+	 * the given time on this machine
+	 * 
+	 * @param targetMillis how long working out a seed should take
+	 * @return the seed function
+	 */
+	public static SeedKdf calibrate(long targetMillis) {
+		return calibrate(targetMillis, Runtime.getRuntime()
+				.availableProcessors());
+	}
+
+	/**
+	 * Makes a PBKDF2 seed function with the given number of lanes, taking
+	 * about the given time on this machine
+	 * 
+	 * One lane is timed on its own, with more iterations each time until the
+	 * timing can be trusted, and then again for a second or so, keeping the
+	 * fastest. The first runs can be several times slower, until the JIT has
+	 * compiled the hashing, and an attacker would not be slowed down by that.
+	 * The lanes run side by side on as many cores as there are, so when there
+	 * are more lanes than cores each core has to run several of them, and
+	 * each gets fewer iterations.
+	 * 
+	 * @param targetMillis how long working out a seed should take
+	 * @param lanes the number of lanes
+	 * @return the seed function
+	 * @throws IllegalArgumentException if there are too few or too many
+	 *             lanes
+	 */
+	public static SeedKdf calibrate(long targetMillis, int lanes) {
+		pbkdf2(lanes, MIN_ITERATIONS);
+
+		// Time one lane, doubling the work while it is too quick to time,
+		// and keep the best rate of the timings long enough to trust
+		char[] probe = "calibration".toCharArray();
+		int trial = MIN_ITERATIONS;
+		double perMilli = 0;
+		long end = System.nanoTime() + CALIBRATION_TOTAL * 1000000L;
+		while (perMilli == 0 || System.nanoTime() - end < 0) {
+			long start = System.nanoTime();
+			lane(probe, 1, 0, trial);
+			long elapsed = System.nanoTime() - start;
+			if (elapsed < CALIBRATION_MILLIS * 1000000L
+					&& trial <= Integer.MAX_VALUE / 2) {
+				trial *= 2;
+				continue;
+			}
+			perMilli = Math.max(perMilli, trial / (elapsed / 1e6));
+		}
+
+		int cores = Runtime.getRuntime().availableProcessors();
+		int rounds = (lanes + cores - 1) / cores;
+		double wanted = perMilli * targetMillis / rounds;
+
+		// Round down to a whole thousand, which is easier to write down
+		long iterations = (long) Math.min(wanted, Integer.MAX_VALUE) / 1000
+				* 1000;
+		return pbkdf2(lanes, (int) Math.max(iterations, MIN_ITERATIONS));
+	}
+
+	/**
+	 * Works out the seed for the characters of a seed code
+	 * 
+	 * @param seedChars the characters of the seed, which are not kept
+	 * @return the seed
+	 */
+	public long derive(char[] seedChars) {
+		if (version == VERSION_LEGACY) {
+			return PasswordBuilder.explodeStringToLong(seedChars);
+		}
+
+		byte[][] outputs = new byte[lanes][];
+		if (lanes == 1) {
+			outputs[0] = lane(seedChars, 1, 0, iterations);
+		} else {
+			LaneTask[] tasks = new LaneTask[lanes];
+			for (int i = 0; i < lanes; i++) {
+				tasks[i] = new LaneTask(seedChars, i, outputs);
+			}
+			RecursiveAction.invokeAll(tasks);
+		}
+
+		// Hash the lanes together, in order, and take the first 64 bits
+		MessageDigest digest = sha256();
+		for (int i = 0; i < lanes; i++) {
+			digest.update(outputs[i]);
+			Arrays.fill(outputs[i], (byte) 0);
+		}
+		byte[] hash = digest.digest();
+		long seed = 0;
+		for (int i = 0; i < 8; i++) {
+			seed = seed << 8 | (hash[i] & 0xFF);
+		}
+		Arrays.fill(hash, (byte) 0);
+		return seed;
+	}
+
+	/**
+	 * Gets the version
+	 * 
+	 * @return VERSION_LEGACY or VERSION_PBKDF2
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Gets the number of lanes
+	 * 
+	 * @return the number of lanes, 0 for the legacy version
+	 */
+	public int getLanes() {
+		return lanes;
+	}
+
+	/**
+	 * Gets the number of PBKDF2 iterations in each lane
+	 * 
+	 * @return the iterations, 0 for the legacy version
+	 */
+	public int getIterations() {
+		return iterations;
+	}
+
+	/**
+	 * Whether another seed function gives the same seeds
+	 */
+	public boolean equals(Object o) {
+		if (!(o instanceof SeedKdf)) {
+			return false;
+		}
+		SeedKdf other = (SeedKdf) o;
+		return version == other.version && lanes == other.lanes
+				&& iterations == other.iterations;
+	}
+
+	public int hashCode() {
+		return (version * 31 + lanes) * 31 + iterations;
+	}
+
+	/**
+	 * String form of the seed function, which parse reads back
+	 */
+	public String toString() {
+		if (version == VERSION_LEGACY) {
+			return LEGACY_NAME;
+		}
+		return PBKDF2_NAME + ":" + lanes + ":" + iterations;
+	}
+
+	/**
+	 * Runs PBKDF2 for one lane
+	 * 
+	 * @param seedChars the characters of the seed
+	 * @param lanes the number of lanes
+	 * @param lane which lane
+	 * @param iterations the number of iterations
+	 * @return the lane's output
+	 */
+	private static byte[] lane(char[] seedChars, int lanes, int lane,
+			int iterations) {
+		// The salt names the version, the number of lanes and the lane
+		byte[] salt = Arrays.copyOf(SALT, SALT.length + 3);
+		salt[SALT.length] = VERSION_PBKDF2;
+		salt[SALT.length + 1] = (byte) (lanes - 1);
+		salt[SALT.length + 2] = (byte) lane;
+
+		PBEKeySpec spec = new PBEKeySpec(seedChars, salt, iterations,
+				LANE_BITS);
+		try {
+			return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec)
+					.getEncoded();
+		} catch (InvalidKeySpecException e) {
+			throw new IllegalArgumentException(e.getMessage(), e);
+		} catch (GeneralSecurityException e) {
+			// Every Java runtime has to provide this algorithm
+			throw new IllegalStateException(ALGORITHM + " is missing", e);
+		} finally {
+			spec.clearPassword();
+		}
+	}
+
+	/**
+	 * Gets a SHA-256 digest
+	 * 
+	 * @return the digest
+	 */
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (GeneralSecurityException e) {
+			// Every Java runtime has to provide this algorithm
+			throw new IllegalStateException("SHA-256 is missing", e);
+		}
+	}
+
+	/**
+	 * Runs one lane in the fork/join pool
+	 */
+	@SuppressWarnings("serial")
+	private class LaneTask extends RecursiveAction {
+
+		/** The characters of the seed */
+		private final char[] seedChars;
+
+		/** Which lane */
+		private final int lane;
+
+		/** Where to put the output of each lane */
+		private final byte[][] outputs;
+
+		/**
+		 * Creates the task for a lane
+		 * 
+		 * @param seedChars the characters of the seed
+		 * @param lane which lane
+		 * @param outputs where to put the output of each lane
+		 */
+		LaneTask(char[] seedChars, int lane, byte[][] outputs) {
+			this.seedChars = seedChars;
+			this.lane = lane;
+			this.outputs = outputs;
+		}
+
+		/**
+		 * Runs the lane
+		 */
+		protected void compute() {
+			outputs[lane] = lane(seedChars, lanes, lane, iterations);
+		}
+	}
+}
@@ -0,0 +1,388 @@
+package gopass.engine;
+
+import gopass.GoBoard;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads games one at a time out of an SGF file
+ * 
+ * The file is read a character at a time, so a collection of any size can be
+ * read without holding more than one game in memory. Only the main line of
+ * each game is kept (the first variation at every branch), and only the moves,
+ * the stones set up with AB and AW (such as handicap stones) and the board
+ * size are read; every other property, comments included, is skipped without
+ * being stored. Set-up stones are recorded as moves of their color, in the
+ * order they are given.
+ * 
+ * @author Jason Mey
+ * @version 1.0
+ */
+public class SgfReader {
+
+	/** The board size used when a game does not give one */
+	private static final int DEFAULT_SIZE = 19;
+
+	/** Property names at least this long (once coded) are never kept */
+	private static final int LONG_NAME = 32 * 32;
+
+	/** Stands for no character having been looked at yet */
+	private static final int NONE = -2;
+
+	/** Where the SGF is read from */
+	private final Reader in;
+
+	/** The character looked at but not yet read, or NONE */
+	private int next;
+
+	/** The value of the property being read */
+	private final StringBuilder value;
+
+	/** The number of rows of the latest game read */
+	private int rows;
+
+	/** The number of columns of the latest game read */
+	private int cols;
+
+	/**
+	 * Creates a reader for the SGF coming from the given reader
+	 * 
+	 * @param in where to read the SGF from
+	 */
+	public SgfReader(Reader in) {
+		if (in instanceof BufferedReader) {
+			this.in = in;
+		} else {
+			this.in = new BufferedReader(in);
+		}
+		next = NONE;
+		value = new StringBuilder();
+		rows = DEFAULT_SIZE;
+		cols = DEFAULT_SIZE;
+	}
+
+	/**
+	 * Reads the next game in the file
+	 * 
+	 * @return the moves of the game's main line, or null if there are no more
+	 *         games
+	 * @throws IOException if the SGF could not be read or is not valid
+	 */
+	public RecordBook next() throws IOException {
+		skipSpace();
+		int c = read();
+		if (c == -1) {
+			return null;
+		}
+		if (c != '(') {
+			throw new IOException("Expected '(' to start a game, found '"
+					+ (char) c + "'");
+		}
+
+		rows = DEFAULT_SIZE;
+		cols = DEFAULT_SIZE;
+		RecordBook book = new RecordBook();
+		boolean mainLine = true;
+		int depth = 1;
+		while (depth > 0) {
+			skipSpace();
+			c = read();
+			if (c == ';') {
+				readNode(book, mainLine);
+			} else if (c == '(') {
+				// The first variation carries on the main line
+				depth++;
+			} else if (c == ')') {
+				// Anything after the main line ends is another variation
+				depth--;
+				mainLine = false;
+			} else if (c == -1) {
+				throw new IOException("Game ended before its last ')'");
+			} else {
+				throw new IOException("Unexpected '" + (char) c + "' in game");
+			}
+		}
+		return book;
+	}
+
+	/**
+	 * Reads the next game in the file and plays it out. Every move is played
+	 * in the color the file gives it, so handicap stones and a player moving
+	 * twice in a row come out as they were played. Moves that cannot be
+	 * played are skipped.
+	 * 
+	 * @return the game, or null if there are no more games
+	 * @throws IOException if the SGF could not be read or is not valid
+	 */
+	public Game nextGame() throws IOException {
+		RecordBook book = next();
+		if (book == null) {
+			return null;
+		}
+
+		Game game = new Game(rows, cols);
+		for (int i = 0; i < book.getSize(); i++) {
+			if (book.wasPass(i)) {
+				game.pass(book.getColor(i));
+			} else {
+				game.play(book.getXCoor(i), book.getYCoor(i), book.getColor(i));
+			}
+		}
+		return game;
+	}
+
+	/**
+	 * Gets the number of rows on the board of the latest game read
+	 * 
+	 * @return the number of rows
+	 */
+	public int getRowNum() {
+		return rows;
+	}
+
+	/**
+	 * Gets the number of columns on the board of the latest game read
+	 * 
+	 * @return the number of columns
+	 */
+	public int getColNum() {
+		return cols;
+	}
+
+	/**
+	 * Closes the reader underneath
+	 * 
+	 * @throws IOException if the reader could not be closed
+	 */
+	public void close() throws IOException {
+		in.close();
+	}
+
+	/**
+	 * Reads the properties of a node, after its ';'
+	 * 
+	 * @param book where to record the moves
+	 * @param mainLine whether the node is on the main line
+	 * @throws IOException if the SGF could not be read or is not valid
+	 */
+	private void readNode(RecordBook book, boolean mainLine)
+			throws IOException {
+		while (true) {
+			skipSpace();
+			int c = peek();
+			if (c < 'A' || c > 'Z') {
+				return;
+			}
+
+			// Old files may mix lower case letters into the name, which are
+			// not part of it
+			int name = 0;
+			while ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z')) {
+				read();
+				if (c >= 'A' && c <= 'Z' && name < LONG_NAME) {
+					name = name * 32 + (c - 'A' + 1);
+				}
+				c = peek();
+			}
+			int color = GoBoard.EMPTY;
+			boolean setup = false;
+			if (name == 'B' - 'A' + 1) {
+				color = GoBoard.BLACK;
+			} else if (name == 'W' - 'A' + 1) {
+				color = GoBoard.WHITE;
+			} else if (name == ('A' - 'A' + 1) * 32 + ('B' - 'A' + 1)) {
+				color = GoBoard.BLACK;
+				setup = true;
+			} else if (name == ('A' - 'A' + 1) * 32 + ('W' - 'A' + 1)) {
+				color = GoBoard.WHITE;
+				setup = true;
+			}
+			boolean size = name == ('S' - 'A' + 1) * 32 + ('Z' - 'A' + 1);
+			boolean keep = mainLine && (color != GoBoard.EMPTY || size);
+
+			skipSpace();
+			if (peek() != '[') {
+				throw new IOException("Property has no value");
+			}
+			while (peek() == '[') {
+				read();
+				readValue(keep);
+				if (keep && size) {
+					readSize();
+				} else if (keep) {
+					readMove(book, color, setup);
+				}
+				skipSpace();
+			}
+		}
+	}
+
+	/**
+	 * Reads a property value, after its '['
+	 * 
+	 * @param keep whether to keep the value, or just skip over it
+	 * @throws IOException if the SGF could not be read or is not valid
+	 */
+	private void readValue(boolean keep) throws IOException {
+		value.setLength(0);
+		while (true) {
+			int c = read();
+			if (c == -1) {
+				throw new IOException("Value ended before its ']'");
+			}
+			if (c == ']') {
+				return;
+			}
+			if (c == '\\') {
+				c = read();
+				if (c == -1) {
+					throw new IOException("Value ended before its ']'");
+				}
+			}
+			if (keep) {
+				value.append((char) c);
+			}
+		}
+	}
+
+	/**
+	 * Reads the board size out of an SZ value, which is either one number or
+	 * columns:rows
+	 * 
+	 * @throws IOException if the value is not a size
+	 */
+	private void readSize() throws IOException {
+		String s = value.toString().trim();
+		try {
+			int colon = s.indexOf(':');
+			if (colon < 0) {
+				rows = Integer.parseInt(s);
+				cols = rows;
+			} else {
+				cols = Integer.parseInt(s.substring(0, colon).trim());
+				rows = Integer.parseInt(s.substring(colon + 1).trim());
+			}
+		} catch (NumberFormatException e) {
+			throw new IOException("Bad board size: " + s);
+		}
+		if (rows < 1 || cols < 1 || rows > 52 || cols > 52) {
+			throw new IOException("Bad board size: " + s);
+		}
+	}
+
+	/**
+	 * Records the move in a B or W value, or the stones in an AB or AW value
+	 * 
+	 * @param book where to record the move
+	 * @param color the color of the stone played
+	 * @param setup whether the value sets stones up rather than playing one,
+	 *            in which case it may be a rectangle of points (aa:cc) but
+	 *            not a pass
+	 * @throws IOException if the value is not a point
+	 */
+	private void readMove(RecordBook book, int color, boolean setup)
+			throws IOException {
+		if (setup) {
+			if (value.length() == 5 && value.charAt(2) == ':') {
+				// A rectangle of stones, given by two opposite corners
+				int y1 = coordinate(value.charAt(0));
+				int x1 = coordinate(value.charAt(1));
+				int y2 = coordinate(value.charAt(3));
+				int x2 = coordinate(value.charAt(4));
+				checkPoint(x1, y1);
+				checkPoint(x2, y2);
+				for (int x = Math.min(x1, x2); x <= Math.max(x1, x2); x++) {
+					for (int y = Math.min(y1, y2); y <= Math.max(y1, y2); y++) {
+						book.addRecord(x, y, color);
+					}
+				}
+				return;
+			}
+			if (value.length() != 2) {
+				throw new IOException("Bad stone: " + value);
+			}
+		} else if (value.length() == 0 || (value.length() == 2 && rows <= 19
+				&& cols <= 19 && value.charAt(0) == 't'
+				&& value.charAt(1) == 't')) {
+			// An empty value, or tt on a small board, is a pass
+			book.addRecord(Game.PASS, Game.PASS, color);
+			return;
+		}
+		if (value.length() != 2) {
+			throw new IOException("Bad move: " + value);
+		}
+
+		// SGF gives the column first
+		int y = coordinate(value.charAt(0));
+		int x = coordinate(value.charAt(1));
+		checkPoint(x, y);
+		book.addRecord(x, y, color);
+	}
+
+	/**
+	 * Checks that a point read out of the value is on the board
+	 * 
+	 * @param x the x-coordinate
+	 * @param y the y-coordinate
+	 * @throws IOException if the point is off the board
+	 */
+	private void checkPoint(int x, int y) throws IOException {
+		if (x < 0 || x >= rows || y < 0 || y >= cols) {
+			throw new IOException("Move off the board: " + value);
+		}
+	}
+
+	/**
+	 * Gets the coordinate an SGF letter stands for
+	 * 
+	 * @param c the letter
+	 * @return the coordinate, or -1 if the letter is not a coordinate
+	 */
+	private static int coordinate(char c) {
+		if (c >= 'a' && c <= 'z') {
+			return c - 'a';
+		}
+		if (c >= 'A' && c <= 'Z') {
+			return c - 'A' + 26;
+		}
+		return -1;
+	}
+
+	/**
+	 * Skips over white space
+	 * 
+	 * @throws IOException if the SGF could not be read
+	 */
+	private void skipSpace() throws IOException {
+		while (Character.isWhitespace(peek())) {
+			read();
+		}
+	}
+
+	/**
+	 * Looks at the next character without reading it
+	 * 
+	 * @return the next character, or -1 at the end of the file
+	 * @throws IOException if the SGF could not be read
+	 */
+	private int peek() throws IOException {
+		if (next == NONE) {
+			next = in.read();
+		}
+		return next;
+	}
+
+	/**
+	 * Reads the next character
+	 * 
+	 * @return the next character, or -1 at the end of the file
+	 * @throws IOException if the SGF could not be read
+	 */
+	private int read() throws IOException {
+		int c = peek();
+		next = NONE;
+		return c;
+	}
+}
@@ -0,0 +1,125 @@
+package gopass.engine;
+
+import gopass.Brand;
+import gopass.GoBoard;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes games out as an SGF collection
+ * 
+ * Each game is written straight to the writer underneath as it is given, one
+ * move at a time, so a collection of any size can be written without building
+ * it up in memory first.
+ * 
+ * @author Jason Mey
+ * @version 1.0
+ */
+public class SgfWriter {
+
+	/** The number of moves to put on each line */
+	private static final int MOVES_PER_LINE = 10;
+
+	/** The largest board side SGF has letters for */
+	private static final int MAX_SIZE = 52;
+
+	/** Where the SGF is written to */
+	private final Writer out;
+
+	/**
+	 * Creates a writer for SGF going to the given writer
+	 * 
+	 * @param out where to write the SGF
+	 */
+	public SgfWriter(Writer out) {
+		if (out instanceof BufferedWriter) {
+			this.out = out;
+		} else {
+			this.out = new BufferedWriter(out);
+		}
+	}
+
+	/**
+	 * Adds a game to the collection
+	 * 
+	 * @param game the game to write
+	 * @throws IOException if the SGF could not be written
+	 */
+	public void write(Game game) throws IOException {
+		GoBoard board = game.getBoard();
+		write(game.getRecordBook(), board.getRowNum(), board.getColNum());
+	}
+
+	/**
+	 * Adds the moves in a record book to the collection as a game
+	 * 
+	 * @param book the moves of the game
+	 * @param rows the number of rows on the board
+	 * @param cols the number of columns on the board
+	 * @throws IOException if the SGF could not be written
+	 * @throws IllegalArgumentException if the board is too large for SGF
+	 */
+	public void write(RecordBook book, int rows, int cols)
+			throws IOException {
+		if (rows < 1 || cols < 1 || rows > MAX_SIZE || cols > MAX_SIZE) {
+			throw new IllegalArgumentException("Board too large for SGF: "
+					+ rows + "x" + cols);
+		}
+
+		out.write("(;GM[1]FF[4]AP[" + Brand.SHORT_NAME + ":" + Brand.FULL_VERSION
+				+ "]SZ[");
+		if (rows == cols) {
+			out.write(Integer.toString(rows));
+		} else {
+			out.write(cols + ":" + rows);
+		}
+		out.write("]\n");
+
+		for (int i = 0; i < book.getSize(); i++) {
+			out.write(book.getColor(i) == GoBoard.WHITE ? ";W[" : ";B[");
+			if (!book.wasPass(i)) {
+				// SGF gives the column first
+				out.write(letter(book.getYCoor(i)));
+				out.write(letter(book.getXCoor(i)));
+			}
+			out.write(']');
+			if (i % MOVES_PER_LINE == MOVES_PER_LINE - 1) {
+				out.write('\n');
+			}
+		}
+		out.write(")\n");
+	}
+
+	/**
+	 * Writes out anything still waiting in the buffer
+	 * 
+	 * @throws IOException if the SGF could not be written
+	 */
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	/**
+	 * Writes out anything still waiting and closes the writer underneath
+	 * 
+	 * @throws IOException if the SGF could not be written
+	 */
+	public void close() throws IOException {
+		out.close();
+	}
+
+	/**
+	 * Gets the SGF letter for a coordinate
+	 * 
+	 * @param coor the coordinate
+	 * @return the letter
+	 */
+	private static char letter(int coor) {
+		if (coor < 26) {
+			return (char) ('a' + coor);
+		}
+		return (char) ('A' + coor - 26);
+	}
+}
@@ -0,0 +1,86 @@
+package gopass.engine;
+
+/**
+ * An array of ints, one per intersection, that only takes memory where
+ * values have been written
+ * 
+ * The array is split into pages of chunks, and both are made the first time
+ * a value in them is set. Reading from a chunk that has never been written
+ * gives 0, so a huge board that is mostly empty only pays for the chunks
+ * around its stones.
+ * 
+ * @author Jason Mey
+ * @version 1.0
+ */
+class SparseIntArray {
+
+	/** The number of bits of an index that pick the place within a chunk */
+	private static final int CHUNK_BITS = 8;
+
+	/** The number of values in a chunk */
+	private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+	/** The number of bits of an index that pick the chunk within a page */
+	private static final int PAGE_BITS = 8;
+
+	/** The number of chunks in a page */
+	private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+	/** The pages of chunks, null until written */
+	private int[][][] pages;
+
+	/**
+	 * Creates an array of the given length, with every value 0
+	 * 
+	 * @param length the length of the array
+	 */
+	SparseIntArray(int length) {
+		int bits = CHUNK_BITS + PAGE_BITS;
+		pages = new int[(int) ((length + (1L << bits) - 1) >>> bits)][][];
+	}
+
+	/**
+	 * Gets a value
+	 * 
+	 * @param i the index
+	 * @return the value
+	 */
+	int get(int i) {
+		int[][] page = pages[i >>> (CHUNK_BITS + PAGE_BITS)];
+		if (page == null) {
+			return 0;
+		}
+		int[] chunk = page[(i >>> CHUNK_BITS) & (PAGE_SIZE - 1)];
+		if (chunk == null) {
+			return 0;
+		}
+		return chunk[i & (CHUNK_SIZE - 1)];
+	}
+
+	/**
+	 * Sets a value, making its page and chunk if needed
+	 * 
+	 * @param i the index
+	 * @param value the value
+	 */
+	void set(int i, int value) {
+		int[][] page = pages[i >>> (CHUNK_BITS + PAGE_BITS)];
+		if (page == null) {
+			// Unwritten values are already 0
+			if (value == 0) {
+				return;
+			}
+			page = new int[PAGE_SIZE][];
+			pages[i >>> (CHUNK_BITS + PAGE_BITS)] = page;
+		}
+		int[] chunk = page[(i >>> CHUNK_BITS) & (PAGE_SIZE - 1)];
+		if (chunk == null) {
+			if (value == 0) {
+				return;
+			}
+			chunk = new int[CHUNK_SIZE];
+			page[(i >>> CHUNK_BITS) & (PAGE_SIZE - 1)] = chunk;
+		}
+		chunk[i & (CHUNK_SIZE - 1)] = value;
+	}
+}
@@ -0,0 +1,181 @@
+package gopass.engine;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters and timings of the work GoPass does, for watching a running
+ * program with jconsole or any other JMX client
+ * 
+ * Nothing is recorded until register is called, which the GUI and the
+ * daemon do when they start; until then each place that records only reads
+ * one flag. Everything is kept in LongAdders, so the threads that record do
+ * not slow each other down, and reading never holds them up. The board's
+ * drawing is timed here too, so all of it can be seen in one place.
+ * 
+ * @author Jason Mey
+ * @version 1.0
+ */
+public final class Stats implements StatsMXBean {
+
+	/** The name the statistics are registered under */
+	public static final String NAME = "gopass:type=Stats";
+
+	/** How long Game.play took for each stone played */
+	public static final LatencyHistogram PLAY = new LatencyHistogram();
+
+	/** How long each board took to encode */
+	public static final LatencyHistogram ENCODE = new LatencyHistogram();
+
+	/** How long each password took to derive */
+	public static final LatencyHistogram DERIVE = new LatencyHistogram();
+
+	/** How long each full paint of the board took */
+	public static final LatencyHistogram PAINT = new LatencyHistogram();
+
+	/** How long each update of the board took */
+	public static final LatencyHistogram UPDATE = new LatencyHistogram();
+
+	/** How long each redraw of a move's intersections took */
+	public static final LatencyHistogram MOVE_UPDATE = new LatencyHistogram();
+
+	/** How long each redraw of the stones a move took off the board took */
+	public static final LatencyHistogram CAPTURE_UPDATE =
+			new LatencyHistogram();
+
+	/** The number of stones played */
+	private static final LongAdder MOVES = new LongAdder();
+
+	/** The number of stones captured */
+	private static final LongAdder CAPTURES = new LongAdder();
+
+	/** The number of moves that took their own group off the board */
+	private static final LongAdder SUICIDES = new LongAdder();
+
+	/** The one set of statistics */
+	private static final Stats INSTANCE = new Stats();
+
+	/** Whether anything is being recorded */
+	private static volatile boolean recording;
+
+	/** Whether the statistics have been registered */
+	private static boolean registered;
+
+	/**
+	 * There is only one set of statistics
+	 */
+	private Stats() {
+	}
+
+	/**
+	 * Registers the statistics with the platform's MBean server and starts
+	 * recording. Calling it again does nothing.
+	 * 
+	 * @return whether the statistics could be registered
+	 */
+	public static synchronized boolean register() {
+		if (!registered) {
+			try {
+				MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+				server.registerMBean(INSTANCE, new ObjectName(NAME));
+			} catch (JMException e) {
+				return false;
+			}
+			registered = true;
+			recording = true;
+		}
+		return true;
+	}
+
+	/**
+	 * Whether anything is being recorded. Places that record check this
+	 * before reading the clock.
+	 * 
+	 * @return whether to record
+	 */
+	public static boolean enabled() {
+		return recording;
+	}
+
+	/**
+	 * Records a stone played with Game.play
+	 * 
+	 * @param nanos how long the move took, in nanoseconds
+	 * @param captured the number of stones the move captured
+	 * @param suicide whether the move took its own group off the board
+	 */
+	public static void recordPlay(long nanos, int captured, boolean suicide) {
+		PLAY.record(nanos);
+		MOVES.increment();
+		if (suicide) {
+			SUICIDES.increment();
+		} else if (captured > 0) {
+			CAPTURES.add(captured);
+		}
+	}
+
+	public long getMoves() {
+		return MOVES.sum();
+	}
+
+	public long getCaptures() {
+		return CAPTURES.sum();
+	}
+
+	public long getSuicides() {
+		return SUICIDES.sum();
+	}
+
+	public LatencySummary getPlayTime() {
+		return PLAY.summarize();
+	}
+
+	public LatencySummary getEncodeTime() {
+		return ENCODE.summarize();
+	}
+
+	public LatencySummary getDerivationTime() {
+		return DERIVE.summarize();
+	}
+
+	public LatencySummary getPaintTime() {
+		return PAINT.summarize();
+	}
+
+	public LatencySummary getUpdateTime() {
+		return UPDATE.summarize();
+	}
+
+	public LatencySummary getMoveUpdateTime() {
+		return MOVE_UPDATE.summarize();
+	}
+
+	public LatencySummary getCaptureUpdateTime() {
+		return CAPTURE_UPDATE.summarize();
+	}
+
+	public boolean isRecording() {
+		return recording;
+	}
+
+	public void setRecording(boolean recording) {
+		Stats.recording = recording;
+	}
+
+	public void reset() {
+		PLAY.reset();
+		ENCODE.reset();
+		DERIVE.reset();
+		PAINT.reset();
+		UPDATE.reset();
+		MOVE_UPDATE.reset();
+		CAPTURE_UPDATE.reset();
+		MOVES.reset();
+		CAPTURES.reset();
+		SUICIDES.reset();
+	}
+}
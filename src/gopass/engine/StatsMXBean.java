@@ -0,0 +1,76 @@
+package gopass.engine;
+
+/**
+ * What GoPass shows of itself over JMX (see Stats)
+ * 
+ * @author Jason Mey
+ * @version 1.0
+ */
+public interface StatsMXBean {
+
+	/**
+	 * @return the number of stones played with Game.play
+	 */
+	public long getMoves();
+
+	/**
+	 * @return the number of stones those moves captured
+	 */
+	public long getCaptures();
+
+	/**
+	 * @return the number of moves that took their own group off the board
+	 */
+	public long getSuicides();
+
+	/**
+	 * @return how long Game.play took for each stone played
+	 */
+	public LatencySummary getPlayTime();
+
+	/**
+	 * @return how long each board took to encode
+	 */
+	public LatencySummary getEncodeTime();
+
+	/**
+	 * @return how long each password took to derive
+	 */
+	public LatencySummary getDerivationTime();
+
+	/**
+	 * @return how long each full paint of the board took
+	 */
+	public LatencySummary getPaintTime();
+
+	/**
+	 * @return how long each update of the board took
+	 */
+	public LatencySummary getUpdateTime();
+
+	/**
+	 * @return how long each redraw of a move's intersections took
+	 */
+	public LatencySummary getMoveUpdateTime();
+
+	/**
+	 * @return how long each redraw of the stones a move took off the board
+	 *         took, counting only moves that took stones off
+	 */
+	public LatencySummary getCaptureUpdateTime();
+
+	/**
+	 * @return whether anything is being recorded
+	 */
+	public boolean isRecording();
+
+	/**
+	 * @param recording whether to record anything
+	 */
+	public void setRecording(boolean recording);
+
+	/**
+	 * Forgets everything recorded so far
+	 */
+	public void reset();
+}
@@ -0,0 +1,45 @@
+package gopass.gui;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for drawing on the board, so the time spent on
+ * the event thread can be lined up with the engine's events
+ * 
+ * @author Jason Mey
+ * @version 1.0
+ */
+@Name("gopass.Draw")
+@Label("Draw Board")
+@Category({ "GoPass", "GUI" })
+@Description("Drawing done by GraphicBoard")
+class DrawEvent extends jdk.jfr.Event {
+
+	/** A full paint of the board */
+	static final String PAINT = "paint";
+
+	/** The temporary stone drawn on repaint */
+	static final String UPDATE = "update";
+
+	/** The intersections a move touched redrawn */
+	static final String MOVE_UPDATE = "moveUpdate";
+
+	/** The stones a move took off or put back redrawn, within MOVE_UPDATE */
+	static final String CAPTURE_UPDATE = "captureUpdate";
+
+	/** Which drawing was done */
+	@Label("Drawing")
+	String drawing;
+
+	/**
+	 * Creates an event for a kind of drawing
+	 * 
+	 * @param drawing PAINT, UPDATE, MOVE_UPDATE or CAPTURE_UPDATE
+	 */
+	DrawEvent(String drawing) {
+		this.drawing = drawing;
+	}
+}
@@ -3,10 +3,13 @@ package gopass.gui;
 import gopass.Brand;
 import gopass.GoBoard;
 import gopass.GoGame;
+import gopass.engine.DerivationOptions;
 import gopass.engine.EncodeBoard;
 import gopass.engine.Game;
-import gopass.engine.Record;
+import gopass.engine.PasswordBuilder;
+import gopass.engine.PasswordDeriver;
 import gopass.engine.RecordBook;
+import gopass.engine.SeedKdf;
 import gopass.gui.AboutDialog;
 
 import java.awt.BorderLayout;
@@ -15,12 +18,22 @@ import java.awt.FlowLayout;
 import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import javax.swing.JButton;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JPasswordField;
+import javax.swing.SwingWorker;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 
 /**
  * The main GUI window
@@ -43,6 +56,38 @@ public class GoGUI extends JFrame implements GoGame {
 	/** The game engine */
 	private Game game;
 
+	/**
+	 * Builds the password, remembering the moves it has already encoded. It
+	 * is only used on the derivation thread.
+	 */
+	private PasswordBuilder passwords = new PasswordBuilder();
+
+	/** The thread passwords are made on, one at a time */
+	private ScheduledExecutorService derivations = Executors
+			.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "GoPass password");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+
+	/** The password being made, or null if there is none */
+	private Derivation derivation;
+
+	/** Wipes the boards and password the builder holds */
+	private final Runnable wipePasswords = new Runnable() {
+		public void run() {
+			passwords.clear();
+		}
+	};
+
+	/**
+	 * The wipe due once no password has been asked for in a while, or null
+	 * if there is none
+	 */
+	private ScheduledFuture<?> wipe;
+
 	/** A graphics-based board */
 	private GraphicBoard board;
 
@@ -99,6 +144,7 @@ public class GoGUI extends JFrame implements GoGame {
 		// Create and label the "Custom Seed" field
 		code = new JPasswordField(15);
 		code.setFont(Brand.FONT);
+		code.getDocument().addDocumentListener(new SeedChange());
 		JLabel codeText = new JLabel("Custom Seed:", JLabel.CENTER);
 		codeText.setFont(Brand.FONT);
 
@@ -141,30 +187,70 @@ public class GoGUI extends JFrame implements GoGame {
 	 * Sets the password in the side panel based on the seed code and moves
 	 */
 	protected void setPassword(int charsPerMove, int useSymbols) {
-		// Convert the seed into a long for the RNG
-		long seed = explodeStringToLong(code.getPassword());
-
-		// Encode a board based on the seed
-		EncodeBoard encodedBoard = new EncodeBoard(seed, charsPerMove,
-				useSymbols);
-
-		// Get the current turn so we know how long to iterate
-		int turn = getTurn();
-
-		// Build the password based on the game record
-		String password = "";
-		for (int i = 0; i < turn; i++) {
-			Record r = game.getRecordBook().getRecord(i);
-			String[][] board = encodedBoard.getBoard();
-			String s = board[r.getXCoor()][r.getYCoor()];
-			password = password + s;
-
-			// Now update the encoded board based on the value of the previous
-			// move to increase the randomness of the subsequent characters
-			encodedBoard = new EncodeBoard(seed
-					+ explodeStringToLong(s.toCharArray()), charsPerMove,
-					useSymbols);
+		setPassword(EncodeBoard.SCHEME_V1, charsPerMove, useSymbols);
+	}
+
+	/**
+	 * Sets the password in the side panel based on the seed code and moves,
+	 * using the given encoding scheme
+	 * 
+	 * The password is made on a thread of its own, so the board keeps
+	 * answering while it is worked out. A password still being made when
+	 * another is asked for is cancelled, and only the newest is shown. Once
+	 * no password has been asked for in as long as the builder keeps its
+	 * boards, they are wiped.
+	 */
+	protected void setPassword(int scheme, int charsPerMove, int useSymbols) {
+		setPassword(scheme, charsPerMove, useSymbols, SeedKdf.LEGACY);
+	}
+
+	/**
+	 * Sets the password in the side panel based on the seed code and moves,
+	 * using the given encoding scheme and seed function
+	 * 
+	 * Any seed function but the original is shown with the password, as it
+	 * is needed to make the same password again.
+	 */
+	protected void setPassword(int scheme, int charsPerMove, int useSymbols,
+			SeedKdf kdf) {
+		// Take what the password needs now, as the seed and the board may
+		// change while it is made
+		char[] seedChars = code.getPassword();
+		DerivationOptions options = new DerivationOptions(scheme,
+				charsPerMove, useSymbols);
+		RecordBook moves = game.getRecordBook().copyMoves();
+
+		if (derivation != null) {
+			derivation.cancel(false);
 		}
+		derivation = new Derivation(seedChars, options, kdf, moves);
+		derivations.execute(derivation);
+		scheduleWipe(PasswordBuilder.CACHED_MILLIS);
+	}
+
+	/**
+	 * Wipes the boards and password the builder holds after a delay, in
+	 * place of any wipe already due. The wipe runs on the derivation thread,
+	 * after the passwords already asked for.
+	 * 
+	 * @param delayMillis how long to wait, in milliseconds
+	 */
+	private void scheduleWipe(long delayMillis) {
+		if (wipe != null) {
+			wipe.cancel(false);
+		}
+		wipe = derivations.schedule(wipePasswords, delayMillis,
+				TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Shows a password in the side panel
+	 * 
+	 * @param password the password
+	 * @param noSeed whether the password was made without a seed
+	 * @param kdf the seed function the password was made with
+	 */
+	private void showPassword(String password, boolean noSeed, SeedKdf kdf) {
 		side.setPasswordOutput(password);
 
 		// Warn the user if their password is short
@@ -173,34 +259,23 @@ public class GoGUI extends JFrame implements GoGame {
 		}
 
 		// Warn the user if they didn't use a seed
-		if (code.getPassword().length == 0) {
+		if (noSeed) {
 			side.appendToPasswordOutput("\n\nNOTE: No seed used.");
 		}
+
+		// Tell the user which seed function to use to make it again
+		if (kdf.getVersion() != SeedKdf.VERSION_LEGACY) {
+			side.appendToPasswordOutput("\n\nSeed function: " + kdf);
+		}
 	}
 
 	/**
-	 * Converts a character array to a long based on its ASCII values. This
-	 * method also increases the size of the number based on character position.
-	 * 
-	 * This allows for greater variations in seeds. For example, it means that
-	 * the seeds generated from "top" and "pot" come out to different values.
-	 * 
-	 * @param str array to convert
-	 * @return the converted long
+	 * Makes the password again if the side panel is showing it live
 	 */
-	private long explodeStringToLong(char[] str) {
-		// Start the value equal to the total length of the string
-		long value = str.length;
-
-		// For every character, add the ASCII value to the value
-		// First, multiply the character by its position to increase variation
-		for (int i = 0; i < str.length; i++) {
-			int character = str[i];
-			long explodedChar = character * (i + 1);
-			value = value + explodedChar;
+	private void preview() {
+		if (side.isLivePreview()) {
+			side.makePassword();
 		}
-
-		return value;
 	}
 
 	/**
@@ -211,6 +286,18 @@ public class GoGUI extends JFrame implements GoGame {
 		game.gameOver();
 		game = new Game(rows, cols);
 
+		// Wipe the boards and password made for the old game, on the thread
+		// that uses them
+		if (derivation != null) {
+			derivation.cancel(false);
+			derivation = null;
+		}
+		if (wipe != null) {
+			wipe.cancel(false);
+			wipe = null;
+		}
+		derivations.execute(wipePasswords);
+
 		// Remove the old board and put on a new one based on the new game
 		graphicPanel.remove(board);
 		board = new GraphicBoard(rows, cols, game.getBoard(), this);
@@ -220,6 +307,7 @@ public class GoGUI extends JFrame implements GoGame {
 		this.repaint();
 		board.repaint();
 		this.validate();
+		preview();
 	}
 
 	/**
@@ -245,14 +333,40 @@ public class GoGUI extends JFrame implements GoGame {
 
 		game.play(x, y);
 
-		// If there was a capture, force a whole board update
+		// If there was a capture, redraw the stones the move took off
 		if (blackCap != game.getBlackCap() || whiteCap != game.getWhiteCap()) {
-			board.captureUpdate();
+			RecordBook book = game.getRecordBook();
+			board.moveUpdate(book.getRecord(book.getSize() - 1));
 		}
+		preview();
+	}
+
+	/**
+	 * Takes back the latest move and redraws the intersections it touched
+	 */
+	protected void undo() {
+		board.moveUpdate(game.undo());
+		board.repaint();
+		preview();
+	}
+
+	/**
+	 * Plays the latest move taken back again and redraws the intersections
+	 * it touched
+	 */
+	protected void redo() {
+		board.moveUpdate(game.redo());
+		board.repaint();
+		preview();
+	}
+
+	public boolean isLegal(int x, int y) {
+		return game.isLegal(x, y);
 	}
 
 	public void pass() {
 		game.pass();
+		preview();
 	}
 
 	public void gameOver() {
@@ -266,11 +380,105 @@ public class GoGUI extends JFrame implements GoGame {
 	public int getTurn() {
 		return game.getTurn();
 	}
+
+	public int getToMove() {
+		return game.getToMove();
+	}
 	
 	public RecordBook getRecordBook() {
 		return game.getRecordBook();
 	}
 
+	/**
+	 * Makes a password away from the event thread, then shows it if no newer
+	 * one was asked for in the meantime
+	 */
+	private class Derivation extends SwingWorker<String, Void> {
+
+		/** The characters of the seed, wiped once the seed is worked out */
+		private final char[] seedChars;
+
+		/** The settings to make the password with */
+		private final DerivationOptions options;
+
+		/** The seed function */
+		private final SeedKdf kdf;
+
+		/** A copy of the moves, which the board cannot change */
+		private final RecordBook moves;
+
+		/** Whether no seed was given */
+		private final boolean noSeed;
+
+		/**
+		 * Creates a derivation
+		 * 
+		 * @param seedChars the characters of the seed
+		 * @param options the settings to make the password with
+		 * @param kdf the seed function
+		 * @param moves a copy of the moves
+		 */
+		public Derivation(char[] seedChars, DerivationOptions options,
+				SeedKdf kdf, RecordBook moves) {
+			this.seedChars = seedChars;
+			this.options = options;
+			this.kdf = kdf;
+			this.moves = moves;
+			noSeed = seedChars.length == 0;
+		}
+
+		protected String doInBackground() {
+			try {
+				// Check before each stage, as a newer password may be wanted
+				if (isCancelled()) {
+					return null;
+				}
+				long seed = PasswordDeriver.seedOf(seedChars, kdf);
+				Arrays.fill(seedChars, '\0');
+				if (isCancelled()) {
+					return null;
+				}
+				return passwords.getPassword(seed, options, moves);
+			} finally {
+				Arrays.fill(seedChars, '\0');
+			}
+		}
+
+		protected void done() {
+			// A derivation cancelled before it ran still holds the seed
+			Arrays.fill(seedChars, '\0');
+			if (this != derivation || isCancelled()) {
+				return;
+			}
+			derivation = null;
+			try {
+				showPassword(get(), noSeed, kdf);
+			} catch (InterruptedException e) {
+				// Done has been called, so get does not wait
+			} catch (ExecutionException e) {
+				side.setPasswordOutput("Could not make the password: "
+						+ e.getCause().getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Listener for the seed field, which remakes a live password
+	 */
+	private class SeedChange implements DocumentListener {
+		public void insertUpdate(DocumentEvent e) {
+			preview();
+		}
+
+		public void removeUpdate(DocumentEvent e) {
+			preview();
+		}
+
+		public void changedUpdate(DocumentEvent e) {
+			preview();
+		}
+	}
+
 	/**
 	 * Listener for the "About" button
 	 */
@@ -11,6 +11,8 @@ import java.awt.event.MouseMotionListener;
 
 import gopass.GoBoard;
 import gopass.GoGame;
+import gopass.engine.Record;
+import gopass.engine.Stats;
 
 /**
  * Creates a go board using a Graphics object
@@ -113,6 +115,11 @@ public class GraphicBoard extends Canvas implements GoBoard {
 	 * @param g the graphics object being used
 	 */
 	public void paint(Graphics g) {
+		boolean timed = Stats.enabled();
+		long start = timed ? System.nanoTime() : 0;
+		DrawEvent event = new DrawEvent(DrawEvent.PAINT);
+		event.begin();
+
 		// Wipe the board clear
 		drawBoard();
 			
@@ -125,6 +132,11 @@ public class GraphicBoard extends Canvas implements GoBoard {
 				}
 			}
 		}
+
+		if (timed) {
+			Stats.PAINT.record(System.nanoTime() - start);
+		}
+		event.commit();
 	}
 
 	/**
@@ -133,6 +145,11 @@ public class GraphicBoard extends Canvas implements GoBoard {
 	 * @param g the graphics object being used
 	 */
 	public void update(Graphics g) {
+		boolean timed = Stats.enabled();
+		long start = timed ? System.nanoTime() : 0;
+		DrawEvent event = new DrawEvent(DrawEvent.UPDATE);
+		event.begin();
+
 		// Erases the previous temporary stone (if needed)
 		if (!prevTemp.getLocation().equals(OFF_BOARD)) {
 			updateIntersection(prevTemp);
@@ -153,20 +170,49 @@ public class GraphicBoard extends Canvas implements GoBoard {
 					tempColor, g);
 		}
 	
+		if (timed) {
+			Stats.UPDATE.record(System.nanoTime() - start);
+		}
+		event.commit();
 	}
 	
-	public void captureUpdate() {
-		// Draw every stone that is actually on the board
-		for (int i = 0; i < getRowNum(); i++) {
-			for (int j = 0; j < getColNum(); j++) {
-				// Draw the appropriate stone if the intersection isn't empty
-				if (getStoneAt(i, j) == EMPTY && game.getRecordBook().beenPlayed(i, j)) {
-					updateIntersection(new Point(i, j));
-				}
+	/**
+	 * Redraws only the intersections a move touched: the stone played and the
+	 * stones it took off the board. The redraw of the stones taken off is
+	 * also timed on its own.
+	 * 
+	 * @param r the record of the move
+	 */
+	public void moveUpdate(Record r) {
+		if (r == null || r.wasPass()) {
+			return;
+		}
+		boolean timed = Stats.enabled();
+		long start = timed ? System.nanoTime() : 0;
+		DrawEvent event = new DrawEvent(DrawEvent.MOVE_UPDATE);
+		event.begin();
+
+		updateIntersection(new Point(r.getXCoor(), r.getYCoor()));
+		long captureStart = timed ? System.nanoTime() : 0;
+		DrawEvent captureEvent = new DrawEvent(DrawEvent.CAPTURE_UPDATE);
+		captureEvent.begin();
+		for (int i = 0; i < r.getRemovedCount(); i++) {
+			updateIntersection(new Point(r.getRemovedX(i), r.getRemovedY(i)));
+		}
+		if (r.getRemovedCount() > 0) {
+			captureEvent.commit();
+		}
+
+		if (timed) {
+			long end = System.nanoTime();
+			Stats.MOVE_UPDATE.record(end - start);
+			if (r.getRemovedCount() > 0) {
+				Stats.CAPTURE_UPDATE.record(end - captureStart);
 			}
 		}
+		event.commit();
 	}
-	
+
 	/**
 	 * Draws or re-draws the entire board as blank
 	 */
@@ -388,8 +434,7 @@ public class GraphicBoard extends Canvas implements GoBoard {
 	 * @return the color of the current player
 	 */
 	private int getCurrentPlayer() {
-		int stoneColor = game.getTurn() % 2 + 1;
-		return stoneColor;
+		return game.getToMove();
 	}
 
 	/**
@@ -441,7 +486,7 @@ public class GraphicBoard extends Canvas implements GoBoard {
 			int y = (int) (yCoor / getColInterval() - .5);
 
 			if (x >= getColNum() || y >= getRowNum() || x < 0 || y < 0
-					|| getStoneAt(x, y) != GoBoard.EMPTY) {
+					|| !game.isLegal(x, y)) {
 				return OFF_BOARD;
 			}
 
@@ -2,6 +2,7 @@ package gopass.gui;
 
 import gopass.Brand;
 import gopass.engine.EncodeBoard;
+import gopass.engine.SeedKdf;
 
 import java.awt.BorderLayout;
 import java.awt.GridLayout;
@@ -10,6 +11,8 @@ import java.awt.event.ActionListener;
 
 import javax.swing.ButtonGroup;
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JRadioButton;
@@ -29,12 +32,22 @@ public class SidePanel extends JPanel {
 	/** Default number of characters per move */
 	private static final int DEFAULT_CHARS_PER_MOVE = 2;
 
+	/** The seed functions offered, the original first */
+	private static final String[] SEED_FUNCTIONS = { "legacy",
+			"pbkdf2:4:200000" };
+
 	/** The "Make Password" button */
 	private JButton passButton;
 
 	/** The "Clear Board" button */
 	private JButton clearButton;
 
+	/** The "Undo" button */
+	private JButton undoButton;
+
+	/** The "Redo" button */
+	private JButton redoButton;
+
 	/** The GoGUI element this side panel is a part of */
 	private GoGUI gui;
 
@@ -53,6 +66,15 @@ public class SidePanel extends JPanel {
 	/** Radio button for deciding to allow no symbols in passwords */
 	private JRadioButton allowNone;
 
+	/** Check box for using the newer encoding scheme */
+	private JCheckBox newScheme;
+
+	/** Check box for making the password again after every change */
+	private JCheckBox livePreview;
+
+	/** The seed function, chosen or typed in as "pbkdf2:LANES:ITERATIONS" */
+	private JComboBox<String> seedFunction;
+
 	/**
 	 * Creates the side panel given which GoGUI it is a part of
 	 * 
@@ -96,15 +118,55 @@ public class SidePanel extends JPanel {
 		// By default, allow all symbols
 		allowAll.setSelected(true);
 
+		// By default, use the original encoding so old passwords still come
+		// out the same
+		newScheme = new JCheckBox("v2");
+		newScheme.setFont(Brand.FONT);
+		newScheme.setToolTipText("Use the newer, faster encoding. Passwords "
+				+ "made with it differ from the original ones.");
+
+		// By default, only make the password when asked
+		livePreview = new JCheckBox("Live");
+		livePreview.setFont(Brand.FONT);
+		livePreview.setToolTipText("Make the password again after every "
+				+ "move, so it can be watched as it grows.");
+
+		// By default, stretch the seed the original way so old passwords
+		// still come out the same
+		JLabel seedLabel = new JLabel("Seed:");
+		seedLabel.setFont(Brand.FONT);
+		seedFunction = new JComboBox<String>(SEED_FUNCTIONS);
+		seedFunction.setEditable(true);
+		seedFunction.setFont(Brand.FONT);
+		seedFunction.setToolTipText("How the seed is stretched: legacy, or "
+				+ "pbkdf2:LANES:ITERATIONS. Passwords made with pbkdf2 differ "
+				+ "from the original ones, and need the same setting to be "
+				+ "made again.");
+		JPanel seedPanel = new JPanel(new BorderLayout());
+		seedPanel.add(seedLabel, BorderLayout.WEST);
+		seedPanel.add(seedFunction, BorderLayout.CENTER);
+
+		// Keep a live password up to date with the settings
+		Preview preview = new Preview();
+		allowAll.addActionListener(preview);
+		allowSome.addActionListener(preview);
+		allowNone.addActionListener(preview);
+		newScheme.addActionListener(preview);
+		livePreview.addActionListener(preview);
+		seedFunction.addActionListener(preview);
+
 		// Put the radio buttons on a panel with a grid layout
-		JPanel symbolPanel = new JPanel(new GridLayout(2, 2));
+		JPanel symbolPanel = new JPanel(new GridLayout(3, 2));
 		symbolPanel.add(allowAll);
 		symbolPanel.add(allowSome);
 		symbolPanel.add(allowNone);
+		symbolPanel.add(newScheme);
+		symbolPanel.add(livePreview);
 
 		// Add the label to the north and the buttons to the center
 		symbols.add(allowSymbols, BorderLayout.NORTH);
 		symbols.add(symbolPanel, BorderLayout.CENTER);
+		symbols.add(seedPanel, BorderLayout.SOUTH);
 
 		// Create the "Make Password" button
 		passButton = new JButton("Make Password");
@@ -116,8 +178,20 @@ public class SidePanel extends JPanel {
 		clearButton.setFont(Brand.FONT);
 		clearButton.addActionListener(new Clear());
 
-		// Add the password and clear buttons to a single panel
-		JPanel passPanel = new JPanel(new GridLayout(2, 1));
+		// Create the "Undo" and "Redo" buttons side by side
+		undoButton = new JButton("Undo");
+		undoButton.setFont(Brand.FONT);
+		undoButton.addActionListener(new Undo());
+		redoButton = new JButton("Redo");
+		redoButton.setFont(Brand.FONT);
+		redoButton.addActionListener(new Redo());
+		JPanel undoPanel = new JPanel(new GridLayout(1, 2));
+		undoPanel.add(undoButton);
+		undoPanel.add(redoButton);
+
+		// Add the undo, password and clear buttons to a single panel
+		JPanel passPanel = new JPanel(new GridLayout(3, 1));
+		passPanel.add(undoPanel);
 		passPanel.add(passButton);
 		passPanel.add(clearButton);
 
@@ -149,24 +223,81 @@ public class SidePanel extends JPanel {
 		passwordOutput.setText(passwordOutput.getText() + text);
 	}
 
+	/**
+	 * Whether the password is made again after every change
+	 * 
+	 * @return whether live preview is on
+	 */
+	public boolean isLivePreview() {
+		return livePreview.isSelected();
+	}
+
+	/**
+	 * Makes the password with the settings chosen in the panel
+	 */
+	protected void makePassword() {
+		// Figure out how the board should be encoded based on the user
+		// preferences
+		int encode;
+
+		if (allowAll.isSelected()) {
+			encode = EncodeBoard.USE_ALL_SYMBOLS;
+		} else if (allowSome.isSelected()) {
+			encode = EncodeBoard.USE_SOME_SYMBOLS;
+		} else {
+			encode = EncodeBoard.USE_NO_SYMBOLS;
+		}
+
+		int scheme = newScheme.isSelected() ? EncodeBoard.SCHEME_V2
+				: EncodeBoard.SCHEME_V1;
+
+		SeedKdf kdf;
+		try {
+			kdf = SeedKdf.parse(String.valueOf(seedFunction.getSelectedItem())
+					.trim());
+		} catch (IllegalArgumentException e) {
+			setPasswordOutput(e.getMessage());
+			return;
+		}
+
+		gui.setPassword(scheme, DEFAULT_CHARS_PER_MOVE, encode, kdf);
+	}
+
 	/**
 	 * Listener for the "Make Password" button
 	 */
 	private class Passer implements ActionListener {
 		public void actionPerformed(ActionEvent e) {
-			// Figure out how the board should be encoded based on the user
-			// preferences
-			int encode;
-
-			if (allowAll.isSelected()) {
-				encode = EncodeBoard.USE_ALL_SYMBOLS;
-			} else if (allowSome.isSelected()) {
-				encode = EncodeBoard.USE_SOME_SYMBOLS;
-			} else {
-				encode = EncodeBoard.USE_NO_SYMBOLS;
+			makePassword();
+		}
+	}
+
+	/**
+	 * Listener for the settings, which remakes a live password
+	 */
+	private class Preview implements ActionListener {
+		public void actionPerformed(ActionEvent e) {
+			if (livePreview.isSelected()) {
+				makePassword();
 			}
+		}
+	}
 
-			gui.setPassword(DEFAULT_CHARS_PER_MOVE, encode);
+	/**
+	 * Listener for the "Undo" button
+	 */
+	private class Undo implements ActionListener {
+		public void actionPerformed(ActionEvent e) {
+			gui.undo();
+		}
+	}
+
+	/**
+	 * Listener for the "Redo" button
+	 */
+	private class Redo implements ActionListener {
+		public void actionPerformed(ActionEvent e) {
+			gui.redo();
 		}
 	}
 